@@ -80,8 +80,13 @@ public class SparkServlet extends HttpServlet {
                 }
               };
 
+  /**
+   * Read on every request, so it is published through a volatile field rather than guarded by a
+   * lock. Suppliers are expected to be stateless.
+   */
   @SuppressWarnings("squid:S2226" /* Lifecycle managed by blueprint. */)
-  private BiFunction<HttpServletRequest, String, HttpServletRequestWrapper> requestSupplier;
+  private volatile BiFunction<HttpServletRequest, String, HttpServletRequestWrapper>
+      requestSupplier;
 
   private final List<SparkApplication> sparkApplications =
       Collections.synchronizedList(new ArrayList<>());
@@ -93,7 +98,7 @@ public class SparkServlet extends HttpServlet {
 
   private MatcherFilter matcherFilter;
 
-  public synchronized void setRequestSupplier(
+  public void setRequestSupplier(
       BiFunction<HttpServletRequest, String, HttpServletRequestWrapper> requestSupplier) {
     this.requestSupplier = requestSupplier;
   }
@@ -140,10 +145,7 @@ public class SparkServlet extends HttpServlet {
       throws ServletException, IOException {
     final String relativePath = getRelativePath(req, filterPath);
 
-    HttpServletRequestWrapper requestWrapper;
-    synchronized (this) {
-      requestWrapper = requestSupplier.apply(req, relativePath);
-    }
+    final HttpServletRequestWrapper requestWrapper = requestSupplier.apply(req, relativePath);
 
     // handle static resources
     boolean consumed = StaticFilesConfiguration.servletInstance.consume(req, resp);
@@ -189,29 +191,33 @@ public class SparkServlet extends HttpServlet {
       path = SLASH + path;
     }
 
-    try {
-      path = URLDecoder.decode(path, "UTF-8");
-    } catch (UnsupportedEncodingException ignore) {
-      // this can't really ever happen
+    // Most paths contain nothing to decode, so skip the decoder and its copy of the path
+    if (path.indexOf('%') >= 0 || path.indexOf('+') >= 0) {
+      try {
+        path = URLDecoder.decode(path, "UTF-8");
+      } catch (UnsupportedEncodingException ignore) {
+        // this can't really ever happen
+      }
     }
 
     LOGGER.debug("Relative path = {}", path);
     return path;
   }
 
-  private synchronized void populateWrapperSupplier(ServletConfig config) {
+  private void populateWrapperSupplier(ServletConfig config) {
     // Do not override an injected supplier through initialization
     if (requestSupplier != null) {
       return;
     }
 
+    BiFunction<HttpServletRequest, String, HttpServletRequestWrapper> supplier = null;
     String wrapperSupplierName = config.getInitParameter(WRAPPER_SUPPLIER_PARAM_NAME);
 
     if (StringUtils.isNotBlank(wrapperSupplierName)) {
       try {
         Class<?> wrapperClass = Class.forName(wrapperSupplierName);
         if (BiFunction.class.isAssignableFrom(wrapperClass)) {
-          requestSupplier =
+          supplier =
               (BiFunction<HttpServletRequest, String, HttpServletRequestWrapper>)
                   wrapperClass.newInstance();
         }
@@ -224,9 +230,7 @@ public class SparkServlet extends HttpServlet {
       }
     }
 
-    if (requestSupplier == null) {
-      requestSupplier = DEFAULT_REQ_FUNC;
-    }
+    requestSupplier = supplier != null ? supplier : DEFAULT_REQ_FUNC;
   }
 
   private void populateSparkApplications(ServletConfig config) {
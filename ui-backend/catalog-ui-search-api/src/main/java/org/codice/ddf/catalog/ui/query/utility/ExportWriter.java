@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.utility;
+
+import ddf.catalog.data.Result;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Writes an export incrementally, one result at a time, so that an export can be streamed to the
+ * client without holding every result in memory. Implementations do not close the underlying
+ * writer.
+ *
+ * @see StreamingQueryResponseTransformer
+ */
+public interface ExportWriter {
+
+  String getMimeType();
+
+  /**
+   * Starts writing the export to {@code writer}, including anything that precedes the first result
+   * such as a header.
+   */
+  void start(Writer writer) throws IOException;
+
+  void write(Result result) throws IOException;
+
+  /** Writes anything that follows the last result and flushes the underlying writer. */
+  void finish() throws IOException;
+}
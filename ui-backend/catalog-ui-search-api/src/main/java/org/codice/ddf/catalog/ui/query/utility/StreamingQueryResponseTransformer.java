@@ -0,0 +1,41 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.utility;
+
+import ddf.catalog.transform.CatalogTransformerException;
+import ddf.catalog.transform.QueryResponseTransformer;
+import java.io.Serializable;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link QueryResponseTransformer} that can also write its output incrementally, one result at a
+ * time. When streaming exports are enabled, exports that use a transformer registered with this
+ * interface are written as the results are read instead of once every result has been read. The
+ * streamed output must be identical to the output of {@link #transform} for the same results.
+ *
+ * <p><b> This code is experimental. While this interface is functional and tested, it may change or
+ * be removed in a future version of the library. </b>
+ */
+public interface StreamingQueryResponseTransformer extends QueryResponseTransformer {
+
+  /**
+   * @param arguments the same arguments that would be passed to {@link #transform}
+   * @return a new writer for a single export, or null if the export can only be produced by {@link
+   *     #transform} with these arguments
+   */
+  @Nullable
+  ExportWriter createExportWriter(Map<String, Serializable> arguments)
+      throws CatalogTransformerException;
+}
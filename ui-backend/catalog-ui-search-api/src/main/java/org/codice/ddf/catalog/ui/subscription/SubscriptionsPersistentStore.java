@@ -13,6 +13,9 @@
  */
 package org.codice.ddf.catalog.ui.subscription;
 
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 public interface SubscriptionsPersistentStore {
@@ -68,6 +71,23 @@ public interface SubscriptionsPersistentStore {
    */
   Set<String> getEmails(String id);
 
+  /**
+   * Get the sets of emails that have been associated with a collection of IDs.
+   *
+   * @param ids must be non-null and elements must be non-blank
+   * @return a non-null map from each ID with at least one email to its email addresses
+   */
+  default Map<String, Set<String>> getEmails(Collection<String> ids) {
+    Map<String, Set<String>> emails = new HashMap<>();
+    for (String id : ids) {
+      Set<String> idEmails = getEmails(id);
+      if (!idEmails.isEmpty()) {
+        emails.put(id, idEmails);
+      }
+    }
+    return emails;
+  }
+
   /**
    * Get the set of subscription ids that have been associated with an email.
    *
@@ -162,6 +162,8 @@ public class ConfigurationApplication implements SparkApplication {
 
   private Integer exportResultLimit = 1000;
 
+  private Boolean streamingQueryResponsesEnabled = false;
+
   private String projection = "EPSG:4326";
 
   private String bingKey = "";
@@ -182,6 +184,8 @@ public class ConfigurationApplication implements SparkApplication {
 
   private int maximumUploadSize = 1_048_576;
 
+  private int metacardLookupChunkSize = 100;
+
   private List<String> readOnly =
       ImmutableList.of(
           "checksum",
@@ -429,6 +433,14 @@ public class ConfigurationApplication implements SparkApplication {
     return maximumUploadSize;
   }
 
+  public void setMetacardLookupChunkSize(int metacardLookupChunkSize) {
+    this.metacardLookupChunkSize = metacardLookupChunkSize;
+  }
+
+  public int getMetacardLookupChunkSize() {
+    return metacardLookupChunkSize;
+  }
+
   public void setHiddenAttributes(List<String> hiddenAttributes) {
     this.hiddenAttributes = hiddenAttributes;
   }
@@ -917,6 +929,14 @@ public class ConfigurationApplication implements SparkApplication {
     this.exportResultLimit = exportResultLimit;
   }
 
+  public Boolean getStreamingQueryResponsesEnabled() {
+    return streamingQueryResponsesEnabled;
+  }
+
+  public void setStreamingQueryResponsesEnabled(Boolean streamingQueryResponsesEnabled) {
+    this.streamingQueryResponsesEnabled = streamingQueryResponsesEnabled;
+  }
+
   public Boolean getSignInEnabled() {
     return signInEnabled;
   }
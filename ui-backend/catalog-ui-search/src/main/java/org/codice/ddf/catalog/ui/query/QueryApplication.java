@@ -23,16 +23,22 @@ import static spark.Spark.post;
 import com.google.common.collect.ImmutableMap;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonWriter;
 import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.plugin.OAuthPluginException;
 import ddf.catalog.source.UnsupportedQueryException;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
 import java.util.function.Function;
+import javax.servlet.http.HttpServletResponse;
 import org.codice.ddf.catalog.ui.CqlParseException;
+import org.codice.ddf.catalog.ui.config.ConfigurationApplication;
 import org.codice.ddf.catalog.ui.metacard.EntityTooLargeException;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequestImpl;
 import org.codice.ddf.catalog.ui.query.cql.SourceWarningsFilterManager;
@@ -43,6 +49,7 @@ import org.codice.ddf.catalog.ui.query.suggestion.LatLonCoordinateProcessor;
 import org.codice.ddf.catalog.ui.query.suggestion.MgrsCoordinateProcessor;
 import org.codice.ddf.catalog.ui.query.suggestion.UtmUpsCoordinateProcessor;
 import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
+import org.codice.ddf.catalog.ui.query.utility.CqlResult;
 import org.codice.ddf.catalog.ui.query.validate.CqlValidationHandler;
 import org.codice.ddf.catalog.ui.util.CqlQueriesImpl;
 import org.codice.ddf.catalog.ui.util.EndpointUtil;
@@ -54,6 +61,8 @@ import org.geotools.geojson.feature.FeatureJSON;
 import org.opengis.feature.simple.SimpleFeature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import spark.Request;
+import spark.Response;
 import spark.servlet.SparkApplication;
 
 public class QueryApplication implements SparkApplication, Function {
@@ -98,6 +107,8 @@ public class QueryApplication implements SparkApplication, Function {
 
   private CqlQueriesImpl cqlQueryUtil;
 
+  private ConfigurationApplication configurationApplication;
+
   public QueryApplication(
       CqlTransformHandler cqlTransformHandler,
       CqlValidationHandler cqlValidationHandler,
@@ -119,24 +130,7 @@ public class QueryApplication implements SparkApplication, Function {
   public void init() {
     before((req, res) -> res.type(APPLICATION_JSON));
 
-    post(
-        "/cql",
-        APPLICATION_JSON,
-        (req, res) -> {
-          try {
-            CqlRequestImpl cqlRequest = GSON.fromJson(util.safeGetBody(req), CqlRequestImpl.class);
-            CqlQueryResponse cqlQueryResponse = cqlQueryUtil.executeCqlQuery(cqlRequest);
-            addApplicableWarningsTo(cqlQueryResponse);
-            return GSON.toJson(cqlQueryResponse);
-          } catch (OAuthPluginException e) {
-            res.status(e.getErrorType().getStatusCode());
-            return GSON.toJson(ImmutableMap.of(ID_KEY, e.getSourceId(), URL_KEY, e.getUrl()));
-          } catch (CqlParseException e) {
-            LOGGER.debug("Unable to parse CQL", e);
-            halt(400, "Unable to parse CQL filter");
-            return null;
-          }
-        });
+    post("/cql", APPLICATION_JSON, this::executeCqlQuery);
 
     post("/cql/transform/:transformerId", cqlTransformHandler, GSON::toJson);
 
@@ -193,6 +187,27 @@ public class QueryApplication implements SparkApplication, Function {
         });
   }
 
+  Object executeCqlQuery(Request req, Response res) throws Exception {
+    try {
+      CqlRequestImpl cqlRequest = GSON.fromJson(util.safeGetBody(req), CqlRequestImpl.class);
+      boolean streaming = isStreamingEnabled();
+      CqlQueryResponse cqlQueryResponse = cqlQueryUtil.executeCqlQuery(cqlRequest, streaming);
+      addApplicableWarningsTo(cqlQueryResponse);
+      if (streaming) {
+        writeJson(cqlQueryResponse, req, res);
+        return "";
+      }
+      return GSON.toJson(cqlQueryResponse);
+    } catch (OAuthPluginException e) {
+      res.status(e.getErrorType().getStatusCode());
+      return GSON.toJson(ImmutableMap.of(ID_KEY, e.getSourceId(), URL_KEY, e.getUrl()));
+    } catch (CqlParseException e) {
+      LOGGER.debug("Unable to parse CQL", e);
+      halt(400, "Unable to parse CQL filter");
+      return null;
+    }
+  }
+
   @Override
   public Object apply(Object req) {
     if (!(req instanceof List)) {
@@ -249,6 +264,63 @@ public class QueryApplication implements SparkApplication, Function {
     this.cqlQueryUtil = cqlQueryUtil;
   }
 
+  public void setConfigurationApplication(ConfigurationApplication configurationApplication) {
+    this.configurationApplication = configurationApplication;
+  }
+
+  private boolean isStreamingEnabled() {
+    return configurationApplication != null
+        && Boolean.TRUE.equals(configurationApplication.getStreamingQueryResponsesEnabled());
+  }
+
+  /**
+   * Serializes the response directly to the client. Combined with a response whose results are
+   * converted lazily, only one converted result is held in memory at a time.
+   *
+   * <p>A failure before the response is committed is rethrown with nothing written, so that the
+   * exception handlers can respond with an error status. Once the response is committed its status
+   * can no longer change, so the connection is aborted instead, rather than letting the client
+   * mistake a truncated response for a complete one.
+   */
+  private void writeJson(CqlQueryResponse cqlQueryResponse, Request req, Response res)
+      throws IOException {
+    // Convert the first result before anything is written, so that results that cannot be
+    // converted at all fail the request with an error status
+    List<CqlResult> results = cqlQueryResponse.getResults();
+    if (results != null && !results.isEmpty()) {
+      results.get(0);
+    }
+
+    HttpServletResponse response = res.raw();
+    JsonWriter jsonWriter =
+        GSON.newJsonWriter(
+            new BufferedWriter(
+                new OutputStreamWriter(response.getOutputStream(), StandardCharsets.UTF_8)));
+    try {
+      GSON.toJson(cqlQueryResponse, cqlQueryResponse.getClass(), jsonWriter);
+    } catch (RuntimeException e) {
+      if (!response.isCommitted()) {
+        response.resetBuffer();
+        throw e;
+      }
+
+      LOGGER.warn("Failed to write query response, aborting the connection", e);
+      abort(req, e);
+      return;
+    }
+    jsonWriter.close();
+  }
+
+  private static void abort(Request req, Throwable cause) {
+    org.eclipse.jetty.server.Request baseRequest =
+        org.eclipse.jetty.server.Request.getBaseRequest(req.raw());
+    if (baseRequest != null) {
+      baseRequest.getHttpChannel().abort(cause);
+    } else {
+      LOGGER.debug("Unable to abort the connection of a request that is not served by Jetty");
+    }
+  }
+
   private void addApplicableWarningsTo(CqlQueryResponse response) {
     if (response.getQueryResponse() == null) {
       LOGGER.debug(
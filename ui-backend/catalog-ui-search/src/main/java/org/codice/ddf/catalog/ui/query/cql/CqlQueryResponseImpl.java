@@ -15,9 +15,9 @@ package org.codice.ddf.catalog.ui.query.cql;
 
 import static ddf.catalog.Constants.EXPERIMENTAL_FACET_RESULTS_KEY;
 
+import com.google.common.collect.Lists;
 import ddf.action.ActionRegistry;
 import ddf.catalog.Constants;
-import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.MetacardType;
 import ddf.catalog.data.Result;
@@ -36,16 +36,16 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import org.codice.ddf.catalog.ui.query.delegate.SearchTerm;
+import org.codice.ddf.catalog.ui.query.delegate.SearchTermMatcher;
 import org.codice.ddf.catalog.ui.query.delegate.SearchTermsDelegate;
 import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
 import org.codice.ddf.catalog.ui.query.utility.CqlResult;
 import org.codice.ddf.catalog.ui.query.utility.MetacardAttribute;
 import org.codice.ddf.catalog.ui.query.utility.Status;
-import org.codice.ddf.catalog.ui.security.LogSanitizer;
 import org.codice.ddf.catalog.ui.transformer.TransformerDescriptors;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -90,17 +90,48 @@ public class CqlQueryResponseImpl implements CqlQueryResponse {
       FilterAdapter filterAdapter,
       ActionRegistry actionRegistry,
       TransformerDescriptors descriptors) {
+    this(
+        id,
+        request,
+        queryResponse,
+        source,
+        normalize,
+        filterAdapter,
+        actionRegistry,
+        descriptors,
+        null,
+        null,
+        false);
+  }
+
+  /**
+   * @param typeDescriptorCache cache of the descriptor metadata of each metacard type, or null to
+   *     derive it for this response only
+   * @param conversionPool pool used to convert the results concurrently, or null to convert them
+   *     on the calling thread
+   * @param lazyResults when true, {@link #getResults()} returns a view that converts each catalog
+   *     result on access instead of holding every converted result in memory. This allows the
+   *     response to be serialized one result at a time, at the cost of re-converting a result each
+   *     time it is accessed.
+   */
+  public CqlQueryResponseImpl(
+      String id,
+      QueryRequest request,
+      QueryResponse queryResponse,
+      String source,
+      boolean normalize,
+      FilterAdapter filterAdapter,
+      ActionRegistry actionRegistry,
+      TransformerDescriptors descriptors,
+      @Nullable MetacardTypeDescriptorCache typeDescriptorCache,
+      @Nullable ResultConversionPool conversionPool,
+      boolean lazyResults) {
     this.id = id;
 
     this.queryResponse = queryResponse;
 
-    AtomicBoolean logOnceState = new AtomicBoolean(false);
-    Consumer<String> logOnce =
-        (str) -> {
-          if (logOnceState.compareAndSet(false, true)) {
-            LOGGER.debug(str);
-          }
-        };
+    final MetacardTypeDescriptorCache typeDescriptors =
+        typeDescriptorCache != null ? typeDescriptorCache : new MetacardTypeDescriptorCache();
 
     types =
         queryResponse
@@ -115,43 +146,35 @@ public class CqlQueryResponseImpl implements CqlQueryResponse {
             .collect(
                 Collectors.toMap(
                     MetacardType::getName,
-                    mt ->
-                        mt.getAttributeDescriptors()
-                            .stream()
-                            .collect(
-                                Collectors.toMap(
-                                    AttributeDescriptor::getName,
-                                    MetacardAttributeImpl::new,
-                                    (ad1, ad2) -> {
-                                      logOnce.accept(
-                                          "Removed duplicate attribute descriptor(s). For more information:\n"
-                                              + "(log:set trace org.codice.ddf.catalog.ui.query.cql)");
-                                      LOGGER.trace(
-                                          "Removed duplicate attribute descriptor.({})",
-                                          LogSanitizer.sanitize(ad1));
-                                      return ad1;
-                                    })),
+                    mt -> typeDescriptors.get(mt).getAttributes(),
                     (mt1, mt2) -> {
                       LOGGER.debug("Removed duplicate metacard type.");
                       return mt1;
                     }));
 
     final Set<SearchTerm> searchTerms = extractSearchTerms(request.getQuery(), filterAdapter);
-    results =
-        queryResponse
-            .getResults()
-            .stream()
-            .map(
-                result ->
-                    new CqlResultImpl(
-                        result,
-                        searchTerms,
-                        queryResponse.getRequest(),
-                        normalize,
-                        filterAdapter,
-                        actionRegistry))
-            .map(cqlResult -> new CqlResultImpl(cqlResult, descriptors))
-            .collect(Collectors.toList());
+    final SearchTermMatcher termMatcher = normalize ? new SearchTermMatcher(searchTerms) : null;
+    final QuerySpatialContext spatialContext =
+        new QuerySpatialContext(queryResponse.getRequest().getQuery(), filterAdapter);
+    final Function<Result, CqlResult> toCqlResult =
+        result ->
+            new CqlResultImpl(
+                new CqlResultImpl(
+                    result,
+                    termMatcher,
+                    normalize,
+                    spatialContext,
+                    typeDescriptors,
+                    actionRegistry),
+                descriptors);
+    if (lazyResults) {
+      results = Lists.transform(queryResponse.getResults(), toCqlResult::apply);
+    } else if (conversionPool != null) {
+      results = conversionPool.convert(queryResponse.getResults(), toCqlResult);
+    } else {
+      results =
+          queryResponse.getResults().stream().map(toCqlResult).collect(Collectors.toList());
+    }
 
     this.facets = getFacetResults(queryResponse.getPropertyValue(EXPERIMENTAL_FACET_RESULTS_KEY));
     this.didYouMeanFields = (List<String>) queryResponse.getProperties().get(DID_YOU_MEAN);
@@ -0,0 +1,349 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import ddf.catalog.operation.CreateResponse;
+import ddf.catalog.operation.DeleteResponse;
+import ddf.catalog.operation.QueryRequest;
+import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.UpdateResponse;
+import ddf.catalog.plugin.PostIngestPlugin;
+import ddf.security.assertion.Attribute;
+import ddf.security.assertion.AttributeStatement;
+import ddf.security.assertion.SecurityAssertion;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
+import org.apache.shiro.subject.PrincipalCollection;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.codice.ddf.catalog.ui.query.utility.CqlRequest;
+import org.geotools.filter.text.ecql.ECQL;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Opt-in cache of the catalog responses to CQL requests, so that re-issuing the same search (for
+ * example when a workspace is reopened) does not query the catalog again.
+ *
+ * <p>Entries are keyed by the normalized CQL, sources, sorts, paging, facets and the security
+ * attributes of the requesting subject, so a response is only ever shared with subjects that would
+ * have been granted the same results. The per-request {@code cacheId}, {@code batchId} and request
+ * id are not part of the key, since the client generates new ones each time a search is run, which
+ * would prevent a reopened workspace from ever reusing a response. Entries are evicted in least
+ * recently used order once the cache is full, expire after a fixed time to live, and are all
+ * discarded whenever metacards are created, updated or deleted.
+ *
+ * <p>Only responses from the local catalog are cached. Changes to other sources are never seen
+ * here, so their responses could only be invalidated by expiring.
+ */
+public class CqlResponseCache implements PostIngestPlugin {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CqlResponseCache.class);
+
+  private static final String ENABLED_PROPERTY = "queryResponseCacheEnabled";
+
+  private static final String SIZE_PROPERTY = "queryResponseCacheSize";
+
+  private static final String TTL_PROPERTY = "queryResponseCacheTtlSeconds";
+
+  private static final int DEFAULT_SIZE = 100;
+
+  private static final int DEFAULT_TTL_SECONDS = 60;
+
+  private final AtomicLong generation = new AtomicLong();
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final AtomicLong evictions = new AtomicLong();
+
+  private final Map<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+  private volatile boolean enabled = false;
+
+  private int maxEntries = DEFAULT_SIZE;
+
+  private volatile long ttlNanos = TimeUnit.SECONDS.toNanos(DEFAULT_TTL_SECONDS);
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * @param localSourceId id of the local catalog
+   * @return true if the cache is enabled and {@code request} only queries the local catalog
+   */
+  public boolean isCacheable(QueryRequest request, String localSourceId) {
+    return enabled
+        && !request.isEnterprise()
+        && CollectionUtils.isNotEmpty(request.getSourceIds())
+        && request.getSourceIds().stream().allMatch(id -> Objects.equals(id, localSourceId));
+  }
+
+  /**
+   * @param cqlRequest the request as received from the client
+   * @param request the catalog request created from {@code cqlRequest}
+   * @return the cache key for {@code request} on behalf of the current subject
+   */
+  public Key key(CqlRequest cqlRequest, QueryRequest request) {
+    List<Object> parts =
+        Arrays.asList(
+            normalizeCql(cqlRequest, request),
+            request.isEnterprise(),
+            request.getSourceIds() == null ? null : new TreeSet<>(request.getSourceIds()),
+            request.getPropertyValue("mode"),
+            sorts(cqlRequest.getSorts()),
+            cqlRequest.getStart(),
+            cqlRequest.getCount(),
+            cqlRequest.getFacets() == null ? null : new TreeSet<>(cqlRequest.getFacets()),
+            cqlRequest.isExcludeUnnecessaryAttributes(),
+            cqlRequest.getSpellcheck(),
+            cqlRequest.getPhonetics(),
+            cqlRequest.getQueryType(),
+            securityAttributes(ThreadContext.getSubject()));
+    return new Key(parts, generation.get());
+  }
+
+  /** @return the cached response for {@code key}, or null if there is none or it has expired */
+  public QueryResponse get(Key key) {
+    if (!enabled) {
+      return null;
+    }
+
+    synchronized (entries) {
+      Entry entry = entries.get(key);
+      if (entry != null && System.nanoTime() - entry.created < ttlNanos) {
+        hits.incrementAndGet();
+        return entry.response;
+      }
+
+      if (entry != null) {
+        entries.remove(key);
+        evictions.incrementAndGet();
+      }
+    }
+
+    misses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Caches {@code response} unless the cache has been invalidated since {@code key} was created,
+   * in which case the response may already be out of date. Responses with processing details, such
+   * as a source that failed to respond, are not cached so that they are retried.
+   */
+  public void put(Key key, QueryResponse response) {
+    if (!enabled
+        || (response.getProcessingDetails() != null
+            && !response.getProcessingDetails().isEmpty())) {
+      return;
+    }
+
+    synchronized (entries) {
+      if (key.generation != generation.get()) {
+        return;
+      }
+
+      entries.put(key, new Entry(response, System.nanoTime()));
+      while (entries.size() > maxEntries) {
+        entries.remove(entries.keySet().iterator().next());
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  public void invalidate() {
+    synchronized (entries) {
+      generation.incrementAndGet();
+      entries.clear();
+    }
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  @Override
+  public CreateResponse process(CreateResponse input) {
+    invalidate();
+    return input;
+  }
+
+  @Override
+  public UpdateResponse process(UpdateResponse input) {
+    invalidate();
+    return input;
+  }
+
+  @Override
+  public DeleteResponse process(DeleteResponse input) {
+    invalidate();
+    return input;
+  }
+
+  public void refresh(Map<String, Object> configuration) {
+    if (MapUtils.isEmpty(configuration)) {
+      return;
+    }
+
+    Object configuredEnabled = configuration.get(ENABLED_PROPERTY);
+    if (configuredEnabled instanceof Boolean) {
+      setQueryResponseCacheEnabled((Boolean) configuredEnabled);
+    }
+
+    Object configuredSize = configuration.get(SIZE_PROPERTY);
+    if (configuredSize instanceof Integer) {
+      setQueryResponseCacheSize((Integer) configuredSize);
+    }
+
+    Object configuredTtl = configuration.get(TTL_PROPERTY);
+    if (configuredTtl instanceof Integer) {
+      setQueryResponseCacheTtlSeconds((Integer) configuredTtl);
+    }
+  }
+
+  public void setQueryResponseCacheEnabled(Boolean enabled) {
+    LOGGER.debug("Setting query response cache enabled : {}", enabled);
+    this.enabled = Boolean.TRUE.equals(enabled);
+    if (!this.enabled) {
+      invalidate();
+    }
+  }
+
+  public void setQueryResponseCacheSize(Integer size) {
+    LOGGER.debug("Setting query response cache size : {}", size);
+    synchronized (entries) {
+      maxEntries = size == null || size < 1 ? DEFAULT_SIZE : size;
+      while (entries.size() > maxEntries) {
+        entries.remove(entries.keySet().iterator().next());
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  public void setQueryResponseCacheTtlSeconds(Integer ttlSeconds) {
+    LOGGER.debug("Setting query response cache time to live : {}s", ttlSeconds);
+    ttlNanos =
+        TimeUnit.SECONDS.toNanos(
+            ttlSeconds == null || ttlSeconds < 1 ? DEFAULT_TTL_SECONDS : ttlSeconds);
+  }
+
+  private static String normalizeCql(CqlRequest cqlRequest, QueryRequest request) {
+    try {
+      return ECQL.toCQL(request.getQuery());
+    } catch (RuntimeException e) {
+      LOGGER.trace("Unable to normalize CQL, using it as provided", e);
+      return cqlRequest.getCql() == null ? null : cqlRequest.getCql().trim();
+    }
+  }
+
+  private static List<List<String>> sorts(List<CqlRequest.Sort> sorts) {
+    if (sorts == null) {
+      return Collections.emptyList();
+    }
+
+    List<List<String>> normalized = new ArrayList<>(sorts.size());
+    for (CqlRequest.Sort sort : sorts) {
+      normalized.add(Arrays.asList(sort.getAttribute(), sort.getDirection()));
+    }
+    return normalized;
+  }
+
+  private static List<Object> securityAttributes(Subject subject) {
+    if (subject == null) {
+      return null;
+    }
+
+    PrincipalCollection principals = subject.getPrincipals();
+    if (principals == null) {
+      return Collections.singletonList(String.valueOf(subject.getPrincipal()));
+    }
+
+    Map<String, Set<String>> attributes = new TreeMap<>();
+    Collection<SecurityAssertion> assertions = principals.byType(SecurityAssertion.class);
+    for (SecurityAssertion assertion : assertions) {
+      for (AttributeStatement statement : assertion.getAttributeStatements()) {
+        for (Attribute attribute : statement.getAttributes()) {
+          attributes
+              .computeIfAbsent(attribute.getName(), name -> new TreeSet<>())
+              .addAll(attribute.getValues());
+        }
+      }
+    }
+    return Arrays.asList(String.valueOf(subject.getPrincipal()), attributes);
+  }
+
+  /** Identifies a cached response. Keys are only comparable within a single cache. */
+  public static final class Key {
+
+    private final List<Object> parts;
+
+    private final long generation;
+
+    private Key(List<Object> parts, long generation) {
+      this.parts = parts;
+      this.generation = generation;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return this == o || (o instanceof Key && parts.equals(((Key) o).parts));
+    }
+
+    @Override
+    public int hashCode() {
+      return parts.hashCode();
+    }
+  }
+
+  private static class Entry {
+
+    private final QueryResponse response;
+
+    private final long created;
+
+    private Entry(QueryResponse response, long created) {
+      this.response = response;
+      this.created = created;
+    }
+  }
+}
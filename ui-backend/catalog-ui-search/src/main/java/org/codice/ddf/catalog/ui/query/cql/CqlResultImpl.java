@@ -14,25 +14,17 @@
 package org.codice.ddf.catalog.ui.query.cql;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.ImmutableMap;
 import ddf.action.Action;
 import ddf.action.ActionRegistry;
 import ddf.catalog.data.Attribute;
-import ddf.catalog.data.AttributeDescriptor;
 import ddf.catalog.data.AttributeType;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.MetacardImpl;
 import ddf.catalog.filter.FilterAdapter;
-import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
-import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transformer.metacard.propertyjson.PropertyJsonMetacardTransformer;
-import java.io.BufferedReader;
-import java.io.IOException;
-import java.io.StringReader;
-import java.text.ParseException;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,21 +32,14 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
+import org.codice.ddf.catalog.ui.query.cql.MetacardTypeDescriptorCache.TypeDescriptors;
 import org.codice.ddf.catalog.ui.query.delegate.SearchTerm;
-import org.codice.ddf.catalog.ui.query.delegate.WktQueryDelegate;
+import org.codice.ddf.catalog.ui.query.delegate.SearchTermMatcher;
 import org.codice.ddf.catalog.ui.query.utility.CqlResult;
 import org.codice.ddf.catalog.ui.transformer.TransformerDescriptors;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
-import org.locationtech.spatial4j.context.SpatialContext;
-import org.locationtech.spatial4j.context.SpatialContextFactory;
-import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
-import org.locationtech.spatial4j.context.jts.ValidationRule;
-import org.locationtech.spatial4j.distance.DistanceUtils;
-import org.locationtech.spatial4j.io.ShapeReader;
-import org.locationtech.spatial4j.shape.Shape;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -62,25 +47,6 @@ public class CqlResultImpl implements CqlResult {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(CqlResultImpl.class);
 
-  // For queries we use repairConvexHull which my cause false positives to be returned but this
-  // is better than potentially missing some results due to false negatives.
-  private static final Map<String, String> SPATIAL_CONTEXT_ARGUMENTS =
-      ImmutableMap.of(
-          "spatialContextFactory",
-          JtsSpatialContextFactory.class.getName(),
-          "validationRule",
-          ValidationRule.repairConvexHull.name(),
-          "allowMultiOverlap",
-          "true");
-
-  private static final SpatialContext SPATIAL_CONTEXT =
-      SpatialContextFactory.makeSpatialContext(
-          SPATIAL_CONTEXT_ARGUMENTS, CqlResultImpl.class.getClassLoader());
-
-  private static final ShapeReader WKT_READER = SPATIAL_CONTEXT.getFormats().getWktReader();
-
-  private static final WktQueryDelegate WKT_QUERY_DELEGATE = new WktQueryDelegate();
-
   private static final String CACHED = "cached";
 
   private static final DateTimeFormatter ISO_8601_DATE_FORMAT =
@@ -125,8 +91,31 @@ public class CqlResultImpl implements CqlResult {
       boolean normalize,
       FilterAdapter filterAdapter,
       ActionRegistry actionRegistry) {
+    this(
+        result,
+        normalize ? new SearchTermMatcher(searchTerms) : null,
+        normalize,
+        new QuerySpatialContext(queryRequest.getQuery(), filterAdapter),
+        new MetacardTypeDescriptorCache(),
+        actionRegistry);
+  }
+
+  /**
+   * @param termMatcher matcher for the query's search terms, shared by every result of the same
+   *     response. Only used when {@code normalize} is true.
+   * @param spatialContext spatial state of the query, shared by every result of the same response
+   * @param typeDescriptorCache cache of the descriptor metadata of each metacard type
+   */
+  public CqlResultImpl(
+      Result result,
+      SearchTermMatcher termMatcher,
+      boolean normalize,
+      QuerySpatialContext spatialContext,
+      MetacardTypeDescriptorCache typeDescriptorCache,
+      ActionRegistry actionRegistry) {
 
     Metacard mc = result.getMetacard();
+    TypeDescriptors typeDescriptors = typeDescriptorCache.get(mc.getMetacardType());
 
     hasThumbnail =
         Optional.of(mc).map(Metacard::getThumbnail).map(thumb -> thumb.length > 0).orElse(false);
@@ -139,11 +128,11 @@ public class CqlResultImpl implements CqlResult {
             .map(Boolean.class::cast)
             .orElse(false);
 
-    distance = normalizeDistance(result, queryRequest.getQuery(), filterAdapter);
+    distance = normalizeDistance(result, spatialContext);
 
     relevance = result.getRelevanceScore();
     if (normalize) {
-      countMatches(searchTerms, mc);
+      countMatches(termMatcher, typeDescriptors, mc);
     }
 
     actions =
@@ -152,7 +141,7 @@ public class CqlResultImpl implements CqlResult {
             .stream()
             .map(action -> new DisplayableAction(action, action.getId()))
             .collect(Collectors.toList());
-    metacard = metacardToMap(result);
+    metacard = metacardToMap(result, typeDescriptors);
   }
 
   private String getDisplayName(TransformerDescriptors descriptors, String id, String title) {
@@ -172,14 +161,13 @@ public class CqlResultImpl implements CqlResult {
         .anyMatch(s -> id.endsWith(s));
   }
 
-  private void countMatches(Set<SearchTerm> searchTerms, Metacard mc) {
+  private void countMatches(
+      SearchTermMatcher termMatcher, TypeDescriptors typeDescriptors, Metacard mc) {
     List<String> textAttributes =
-        mc.getMetacardType()
-            .getAttributeDescriptors()
+        typeDescriptors
+            .getTextAttributeNames()
             .stream()
-            .filter(Objects::nonNull)
-            .filter(CqlResultImpl::isTextAttribute)
-            .map(descriptor -> mc.getAttribute(descriptor.getName()))
+            .map(mc::getAttribute)
             .filter(Objects::nonNull)
             .map(attribute -> Optional.ofNullable(attribute.getValue()))
             .filter(Optional::isPresent)
@@ -187,33 +175,7 @@ public class CqlResultImpl implements CqlResult {
             .map(Object::toString)
             .collect(Collectors.toList());
 
-    List<SearchTerm> terms =
-        searchTerms
-            .stream()
-            .filter(term -> !"*".equals(term.getTerm()))
-            .collect(Collectors.toList());
-
-    int totalTokens = 0;
-    for (String value : textAttributes) {
-      BufferedReader reader = new BufferedReader(new StringReader(value.toLowerCase()));
-      String line;
-      try {
-        while ((line = reader.readLine()) != null) {
-          String[] tokens = line.split("[\\s\\p{Punct}]+");
-          for (String token : tokens) {
-            totalTokens++;
-            for (SearchTerm term : terms) {
-              if (term.match(token)) {
-                matches.put(term.getTerm(), matches.getOrDefault(term.getTerm(), 0) + 1);
-              }
-            }
-          }
-        }
-      } catch (IOException e) {
-        LOGGER.debug("Unable to read line", e);
-      }
-      matches.put("*", totalTokens);
-    }
+    matches = termMatcher.countMatches(textAttributes);
   }
 
   private void addCachedDate(Metacard metacard, Map<String, Object> json) {
@@ -225,27 +187,15 @@ public class CqlResultImpl implements CqlResult {
     }
   }
 
-  private Double normalizeDistance(Result result, Query query, FilterAdapter filterAdapter) {
+  private Double normalizeDistance(Result result, QuerySpatialContext spatialContext) {
     Double resultDistance = result.getDistanceInMeters();
 
-    try {
-      String queryWkt = filterAdapter.adapt(query, WKT_QUERY_DELEGATE);
-      if (StringUtils.isNotBlank(queryWkt)) {
-        Shape queryShape = WKT_READER.read(queryWkt);
-        if (result.getMetacard() != null
-            && StringUtils.isNotBlank(result.getMetacard().getLocation())) {
-          Shape locationShape = WKT_READER.read(result.getMetacard().getLocation());
-
-          resultDistance =
-              DistanceUtils.degrees2Dist(
-                      SPATIAL_CONTEXT.calcDistance(
-                          locationShape.getCenter(), queryShape.getCenter()),
-                      DistanceUtils.EARTH_MEAN_RADIUS_KM)
-                  * 1000;
-        }
+    if (result.getMetacard() != null) {
+      Double locationDistance =
+          spatialContext.distanceInMeters(result.getMetacard().getLocation());
+      if (locationDistance != null) {
+        resultDistance = locationDistance;
       }
-    } catch (IOException | ParseException | UnsupportedQueryException e) {
-      LOGGER.debug("Unable to parse query wkt", e);
     }
 
     if (resultDistance != null && (resultDistance < 0 || resultDistance > Double.MAX_VALUE)) {
@@ -254,23 +204,14 @@ public class CqlResultImpl implements CqlResult {
     return resultDistance;
   }
 
-  private Map<String, Object> metacardToMap(Result result) {
+  private Map<String, Object> metacardToMap(Result result, TypeDescriptors typeDescriptors) {
     Map<String, Object> geoJson = null;
     MetacardImpl resultMetacard =
         new MetacardImpl(result.getMetacard(), result.getMetacard().getMetacardType());
     try {
 
-      for (AttributeDescriptor descriptor :
-          resultMetacard.getMetacardType().getAttributeDescriptors()) {
-        switch (descriptor.getType().getAttributeFormat()) {
-          case BINARY:
-          case XML:
-          case OBJECT:
-            resultMetacard.setAttribute(descriptor.getName(), null);
-            break;
-          default:
-            break;
-        }
+      for (String attributeName : typeDescriptors.getExcludedAttributeNames()) {
+        resultMetacard.setAttribute(attributeName, null);
       }
 
       geoJson =
@@ -287,16 +228,6 @@ public class CqlResultImpl implements CqlResult {
     return geoJson;
   }
 
-  private static boolean isTextAttribute(AttributeDescriptor descriptor) {
-    switch (descriptor.getType().getAttributeFormat()) {
-      case STRING:
-      case XML:
-        return true;
-      default:
-        return false;
-    }
-  }
-
   public Map<String, Object> getMetacard() {
     return metacard;
   }
@@ -0,0 +1,183 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeType.AttributeFormat;
+import ddf.catalog.data.InjectableAttribute;
+import ddf.catalog.data.MetacardType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.codice.ddf.catalog.ui.query.utility.MetacardAttribute;
+import org.codice.ddf.catalog.ui.security.LogSanitizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Caches the descriptor metadata the UI derives from a {@link MetacardType}, keyed by type name.
+ * Metacard types rarely change at runtime, so the cache is only invalidated when a {@link
+ * MetacardType} or {@link InjectableAttribute} service comes or goes. Each invalidation bumps the
+ * cache version, which dependents such as {@code EndpointUtil} can use to invalidate their own
+ * derived state.
+ */
+public class MetacardTypeDescriptorCache {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(MetacardTypeDescriptorCache.class);
+
+  private final AtomicLong version = new AtomicLong();
+
+  private final Map<String, TypeDescriptors> entries = new ConcurrentHashMap<>();
+
+  /**
+   * @return the descriptors for {@code metacardType}. A cached entry is only reused for the same
+   *     type, so a different type that happens to share a name is never described by another
+   *     type's descriptors.
+   */
+  public TypeDescriptors get(MetacardType metacardType) {
+    String name = metacardType.getName();
+    long current = version.get();
+
+    if (name == null) {
+      return new TypeDescriptors(metacardType, current);
+    }
+
+    TypeDescriptors cached = entries.get(name);
+    if (cached != null && cached.version == current && cached.describes(metacardType)) {
+      return cached;
+    }
+
+    TypeDescriptors descriptors = new TypeDescriptors(metacardType, current);
+    if (version.get() == current) {
+      entries.put(name, descriptors);
+    }
+    return descriptors;
+  }
+
+  /** @return a number that changes every time the cache is invalidated */
+  public long getVersion() {
+    return version.get();
+  }
+
+  public void invalidate() {
+    version.incrementAndGet();
+    entries.clear();
+  }
+
+  public void bindMetacardType(MetacardType metacardType) {
+    LOGGER.trace("Metacard type added, invalidating descriptor cache");
+    invalidate();
+  }
+
+  public void unbindMetacardType(MetacardType metacardType) {
+    LOGGER.trace("Metacard type removed, invalidating descriptor cache");
+    invalidate();
+  }
+
+  public void bindInjectableAttribute(InjectableAttribute injectableAttribute) {
+    LOGGER.trace("Injectable attribute added, invalidating descriptor cache");
+    invalidate();
+  }
+
+  public void unbindInjectableAttribute(InjectableAttribute injectableAttribute) {
+    LOGGER.trace("Injectable attribute removed, invalidating descriptor cache");
+    invalidate();
+  }
+
+  /** Descriptor metadata for a single metacard type. Instances are immutable. */
+  public static class TypeDescriptors {
+
+    private final MetacardType metacardType;
+
+    private final long version;
+
+    private final Map<String, MetacardAttribute> attributes;
+
+    private final List<String> excludedAttributeNames;
+
+    private final List<String> textAttributeNames;
+
+    private TypeDescriptors(MetacardType metacardType, long version) {
+      this.metacardType = metacardType;
+      this.version = version;
+
+      Map<String, MetacardAttribute> attributeMap = new HashMap<>();
+      List<String> excluded = new ArrayList<>();
+      List<String> text = new ArrayList<>();
+      boolean loggedDuplicate = false;
+
+      for (AttributeDescriptor descriptor : metacardType.getAttributeDescriptors()) {
+        if (descriptor == null) {
+          continue;
+        }
+
+        AttributeFormat format = descriptor.getType().getAttributeFormat();
+        if (format == AttributeFormat.STRING || format == AttributeFormat.XML) {
+          text.add(descriptor.getName());
+        }
+
+        if (attributeMap.containsKey(descriptor.getName())) {
+          if (!loggedDuplicate) {
+            LOGGER.debug(
+                "Removed duplicate attribute descriptor(s). For more information:\n"
+                    + "(log:set trace org.codice.ddf.catalog.ui.query.cql)");
+            loggedDuplicate = true;
+          }
+          LOGGER.trace(
+              "Removed duplicate attribute descriptor.({})", LogSanitizer.sanitize(descriptor));
+          continue;
+        }
+
+        attributeMap.put(descriptor.getName(), new MetacardAttributeImpl(descriptor));
+
+        switch (format) {
+          case BINARY:
+          case XML:
+          case OBJECT:
+            excluded.add(descriptor.getName());
+            break;
+          default:
+            break;
+        }
+      }
+
+      this.attributes = Collections.unmodifiableMap(attributeMap);
+      this.excludedAttributeNames = Collections.unmodifiableList(excluded);
+      this.textAttributeNames = Collections.unmodifiableList(text);
+    }
+
+    /** @return the UI's view of each attribute, keyed by attribute name */
+    public Map<String, MetacardAttribute> getAttributes() {
+      return attributes;
+    }
+
+    /** @return names of the binary, XML and object attributes that are not sent to the UI */
+    public List<String> getExcludedAttributeNames() {
+      return excludedAttributeNames;
+    }
+
+    /** @return names of the string and XML attributes, in descriptor order */
+    public List<String> getTextAttributeNames() {
+      return textAttributeNames;
+    }
+
+    private boolean describes(MetacardType other) {
+      return metacardType == other || metacardType.equals(other);
+    }
+  }
+}
@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import com.google.common.collect.ImmutableMap;
+import ddf.catalog.filter.FilterAdapter;
+import ddf.catalog.operation.Query;
+import ddf.catalog.source.UnsupportedQueryException;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
+import org.codice.ddf.catalog.ui.query.delegate.WktQueryDelegate;
+import org.locationtech.spatial4j.context.SpatialContext;
+import org.locationtech.spatial4j.context.SpatialContextFactory;
+import org.locationtech.spatial4j.context.jts.JtsSpatialContextFactory;
+import org.locationtech.spatial4j.context.jts.ValidationRule;
+import org.locationtech.spatial4j.distance.DistanceUtils;
+import org.locationtech.spatial4j.io.ShapeReader;
+import org.locationtech.spatial4j.shape.Point;
+import org.locationtech.spatial4j.shape.Shape;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Spatial state shared by every result of a single query response. The query's WKT is adapted and
+ * parsed once, and result locations are parsed once per distinct WKT string, so results with the
+ * same footprint share a single parse.
+ */
+public class QuerySpatialContext {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(QuerySpatialContext.class);
+
+  // For queries we use repairConvexHull which my cause false positives to be returned but this
+  // is better than potentially missing some results due to false negatives.
+  private static final Map<String, String> SPATIAL_CONTEXT_ARGUMENTS =
+      ImmutableMap.of(
+          "spatialContextFactory",
+          JtsSpatialContextFactory.class.getName(),
+          "validationRule",
+          ValidationRule.repairConvexHull.name(),
+          "allowMultiOverlap",
+          "true");
+
+  private static final SpatialContext SPATIAL_CONTEXT =
+      SpatialContextFactory.makeSpatialContext(
+          SPATIAL_CONTEXT_ARGUMENTS, QuerySpatialContext.class.getClassLoader());
+
+  private static final ShapeReader WKT_READER = SPATIAL_CONTEXT.getFormats().getWktReader();
+
+  private static final WktQueryDelegate WKT_QUERY_DELEGATE = new WktQueryDelegate();
+
+  private final Shape queryShape;
+
+  private final Point queryCenter;
+
+  private final Map<String, Optional<Point>> locationCenters = new ConcurrentHashMap<>();
+
+  public QuerySpatialContext(Query query, FilterAdapter filterAdapter) {
+    this.queryShape = parseQueryShape(query, filterAdapter);
+    this.queryCenter = queryShape == null ? null : queryShape.getCenter();
+  }
+
+  /** @return the shape of the query's spatial criteria, or null if the query is not spatial */
+  @Nullable
+  public Shape getQueryShape() {
+    return queryShape;
+  }
+
+  /** @return the center of the query's spatial criteria, or null if the query is not spatial */
+  @Nullable
+  public Point getQueryCenter() {
+    return queryCenter;
+  }
+
+  /**
+   * @param locationWkt the location of a result
+   * @return the distance in meters between the center of {@code locationWkt} and the center of the
+   *     query shape, or null if the query is not spatial or the location cannot be parsed
+   */
+  @Nullable
+  public Double distanceInMeters(@Nullable String locationWkt) {
+    if (queryCenter == null || StringUtils.isBlank(locationWkt)) {
+      return null;
+    }
+
+    Point locationCenter =
+        locationCenters.computeIfAbsent(locationWkt, QuerySpatialContext::parseCenter).orElse(null);
+
+    if (locationCenter == null) {
+      return null;
+    }
+
+    return DistanceUtils.degrees2Dist(
+            SPATIAL_CONTEXT.calcDistance(locationCenter, queryCenter),
+            DistanceUtils.EARTH_MEAN_RADIUS_KM)
+        * 1000;
+  }
+
+  private static Shape parseQueryShape(Query query, FilterAdapter filterAdapter) {
+    try {
+      String queryWkt = filterAdapter.adapt(query, WKT_QUERY_DELEGATE);
+      if (StringUtils.isNotBlank(queryWkt)) {
+        return WKT_READER.read(queryWkt);
+      }
+    } catch (IOException | ParseException | UnsupportedQueryException e) {
+      LOGGER.debug("Unable to parse query wkt", e);
+    }
+    return null;
+  }
+
+  private static Optional<Point> parseCenter(String wkt) {
+    try {
+      return Optional.of(WKT_READER.read(wkt).getCenter());
+    } catch (IOException | ParseException e) {
+      LOGGER.debug("Unable to parse result location wkt", e);
+      return Optional.empty();
+    }
+  }
+}
@@ -0,0 +1,219 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import org.apache.commons.collections.MapUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converts the results of a query response on a shared, bounded pool of threads. Results are split
+ * into contiguous chunks, one of which is converted on the calling thread, and the converted
+ * chunks are concatenated so the original result order is preserved.
+ */
+public class ResultConversionPool {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ResultConversionPool.class);
+
+  private static final String THREADS_PROPERTY = "resultConversionThreads";
+
+  private static final String PARALLELISM_PROPERTY = "resultConversionParallelism";
+
+  /** Chunks smaller than this are not worth the hand-off to another thread. */
+  private static final int MIN_RESULTS_PER_TASK = 25;
+
+  /** Chunks that may wait for a pool thread, per thread, before callers convert them themselves. */
+  private static final int QUEUED_TASKS_PER_THREAD = 4;
+
+  private ExecutorService executor;
+
+  private int threads = Runtime.getRuntime().availableProcessors();
+
+  private volatile int parallelism = 4;
+
+  public ResultConversionPool() {
+    this.executor = createExecutor(threads);
+  }
+
+  /**
+   * Converts every item with {@code converter}, returning the converted items in the same order.
+   * At most {@code resultConversionParallelism} chunks are converted concurrently for a single
+   * call.
+   */
+  public <T, R> List<R> convert(List<T> items, Function<T, R> converter) {
+    ExecutorService pool = getExecutor();
+    int tasks = Math.min(parallelism, items.size() / MIN_RESULTS_PER_TASK);
+
+    if (pool == null || tasks <= 1) {
+      return convertAll(items, converter);
+    }
+
+    int chunkSize = (items.size() + tasks - 1) / tasks;
+    List<Future<List<R>>> futures = new ArrayList<>(tasks - 1);
+    List<List<T>> rejected = new ArrayList<>();
+
+    for (int from = chunkSize; from < items.size(); from += chunkSize) {
+      List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+      try {
+        futures.add(pool.submit(withCurrentSubject(() -> convertAll(chunk, converter))));
+      } catch (RejectedExecutionException e) {
+        LOGGER.debug("Result conversion pool is shutting down, converting on request thread", e);
+        rejected.add(chunk);
+      }
+    }
+
+    List<R> converted = new ArrayList<>(items.size());
+    boolean completed = false;
+    try {
+      converted.addAll(convertAll(items.subList(0, chunkSize), converter));
+
+      for (Future<List<R>> future : futures) {
+        converted.addAll(getChunk(future));
+      }
+      completed = true;
+    } finally {
+      if (!completed) {
+        // nobody is waiting for the remaining chunks anymore, so stop converting them
+        futures.forEach(future -> future.cancel(true));
+      }
+    }
+
+    // rejected chunks always trail the submitted ones, so appending them keeps the order intact
+    for (List<T> chunk : rejected) {
+      converted.addAll(convertAll(chunk, converter));
+    }
+
+    return converted;
+  }
+
+  public void refresh(Map<String, Object> configuration) {
+    if (MapUtils.isEmpty(configuration)) {
+      return;
+    }
+
+    Object configuredThreads = configuration.get(THREADS_PROPERTY);
+    if (configuredThreads instanceof Integer) {
+      setResultConversionThreads((Integer) configuredThreads);
+    }
+
+    Object configuredParallelism = configuration.get(PARALLELISM_PROPERTY);
+    if (configuredParallelism instanceof Integer) {
+      setResultConversionParallelism((Integer) configuredParallelism);
+    }
+  }
+
+  /** @param threads size of the shared pool, or a value less than 1 to use one per processor */
+  public synchronized void setResultConversionThreads(Integer threads) {
+    int size =
+        threads == null || threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
+    if (size == this.threads && executor != null) {
+      return;
+    }
+
+    LOGGER.debug("Setting result conversion threads : {}", size);
+    ExecutorService previous = executor;
+    this.threads = size;
+    this.executor = createExecutor(size);
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
+  /** @param parallelism maximum number of threads used to convert a single response */
+  public void setResultConversionParallelism(Integer parallelism) {
+    LOGGER.debug("Setting result conversion parallelism : {}", parallelism);
+    this.parallelism = parallelism == null || parallelism < 1 ? 1 : parallelism;
+  }
+
+  public synchronized void destroy() {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+    }
+  }
+
+  private synchronized ExecutorService getExecutor() {
+    return executor;
+  }
+
+  /**
+   * The work queue is bounded so a burst of large responses cannot pile up an unlimited backlog.
+   * Once it is full the submitting request thread converts the chunk itself, which also slows
+   * callers down to the rate the pool can sustain.
+   */
+  private static ExecutorService createExecutor(int threads) {
+    return new ThreadPoolExecutor(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(threads * QUEUED_TASKS_PER_THREAD),
+        StandardThreadFactoryBuilder.newThreadFactory("cqlResultConversionThread"),
+        ResultConversionPool::runOnCaller);
+  }
+
+  /**
+   * Unlike {@link ThreadPoolExecutor.CallerRunsPolicy}, a pool that is shutting down rejects the
+   * task instead of silently discarding it, which would leave its future waiting forever.
+   */
+  private static void runOnCaller(Runnable task, ThreadPoolExecutor executor) {
+    if (executor.isShutdown()) {
+      throw new RejectedExecutionException("Result conversion pool is shut down");
+    }
+    task.run();
+  }
+
+  private static <T, R> List<R> convertAll(List<T> items, Function<T, R> converter) {
+    return items.stream().map(converter).collect(Collectors.toList());
+  }
+
+  /**
+   * Conversion looks up actions and may consult security-aware services, so the worker thread runs
+   * as the subject of the request that submitted the work.
+   */
+  private static <V> Callable<V> withCurrentSubject(Callable<V> callable) {
+    Subject subject = ThreadContext.getSubject();
+    return subject == null ? callable : subject.associateWith(callable);
+  }
+
+  private static <R> List<R> getChunk(Future<List<R>> future) {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while converting query results", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Unable to convert query results", e.getCause());
+    }
+  }
+}
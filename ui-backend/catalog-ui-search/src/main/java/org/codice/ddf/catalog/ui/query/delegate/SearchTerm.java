@@ -46,6 +46,11 @@ public class SearchTerm {
     return term;
   }
 
+  /** @return the case-insensitive pattern for wildcard terms, or null for exact terms */
+  public Pattern getPattern() {
+    return pattern;
+  }
+
   public boolean match(String other) {
     if ("*".equals(term)) {
       return true;
@@ -0,0 +1,441 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.delegate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Counts how often a fixed set of {@link SearchTerm}s occur in text. The terms are compiled once so
+ * the same matcher can be shared by every result of a query response; it holds no per-call state
+ * and is safe for concurrent use.
+ *
+ * <p>The result is identical to lowercasing each value, splitting it into lines, splitting each
+ * line on {@code [\s\p{Punct}]+} and calling {@link SearchTerm#match(String)} for every token and
+ * term, but tokens are scanned in place rather than copied:
+ *
+ * <ul>
+ *   <li>exact terms are found with a single lookup in an open-addressed hash table keyed on the
+ *       token's characters
+ *   <li>wildcard terms are compiled to glob matchers and dispatched on their first literal
+ *       character, so a token is only compared against the wildcard terms that can match it
+ *   <li>wildcard terms whose pattern cannot be expressed as a glob fall back to {@link
+ *       SearchTerm#match(String)}
+ * </ul>
+ */
+public class SearchTermMatcher {
+
+  public static final String TOTAL_TOKENS_KEY = "*";
+
+  private static final int ASCII = 128;
+
+  /** Term strings, indexed by the position used in the per-call counts array. */
+  private final String[] terms;
+
+  private final ExactTermTable exactTerms;
+
+  /** Globs whose first element is the ASCII literal at that index (lowercased). */
+  private final Glob[][] globsByFirstChar = new Glob[ASCII][];
+
+  /** Globs starting with a wildcard or a non-ASCII literal; tried against every token. */
+  private final Glob[] unindexedGlobs;
+
+  private final Glob[] allGlobs;
+
+  private final SearchTerm[] regexTerms;
+
+  private final int[] regexTermIndexes;
+
+  public SearchTermMatcher(Collection<SearchTerm> searchTerms) {
+    Map<String, Integer> termIndexes = new LinkedHashMap<>();
+    Map<String, Integer> exactTermWeights = new HashMap<>();
+    List<Glob> globs = new ArrayList<>();
+    List<SearchTerm> regex = new ArrayList<>();
+
+    if (searchTerms != null) {
+      for (SearchTerm searchTerm : searchTerms) {
+        if (searchTerm == null || TOTAL_TOKENS_KEY.equals(searchTerm.getTerm())) {
+          continue;
+        }
+
+        int index = termIndexes.computeIfAbsent(searchTerm.getTerm(), t -> termIndexes.size());
+        Pattern pattern = searchTerm.getPattern();
+
+        if (pattern == null) {
+          exactTermWeights.merge(searchTerm.getTerm(), 1, Integer::sum);
+        } else {
+          Glob glob = Glob.compile(pattern, searchTerm, index);
+          if (glob != null) {
+            globs.add(glob);
+          } else {
+            regex.add(searchTerm);
+          }
+        }
+      }
+    }
+
+    this.terms = termIndexes.keySet().toArray(new String[0]);
+    this.exactTerms = new ExactTermTable(exactTermWeights, termIndexes);
+    this.allGlobs = globs.toArray(new Glob[0]);
+
+    List<Glob> unindexed = new ArrayList<>();
+    List<List<Glob>> indexed = new ArrayList<>(ASCII);
+    for (int i = 0; i < ASCII; i++) {
+      indexed.add(new ArrayList<>());
+    }
+    for (Glob glob : globs) {
+      int first = glob.firstLiteral();
+      if (first >= 0 && first < ASCII) {
+        indexed.get(first).add(glob);
+      } else {
+        unindexed.add(glob);
+      }
+    }
+    for (int i = 0; i < ASCII; i++) {
+      globsByFirstChar[i] = indexed.get(i).isEmpty() ? null : indexed.get(i).toArray(new Glob[0]);
+    }
+    this.unindexedGlobs = unindexed.toArray(new Glob[0]);
+
+    this.regexTerms = regex.toArray(new SearchTerm[0]);
+    this.regexTermIndexes = new int[regexTerms.length];
+    for (int i = 0; i < regexTerms.length; i++) {
+      regexTermIndexes[i] = termIndexes.get(regexTerms[i].getTerm());
+    }
+  }
+
+  /**
+   * @param values the text to search, one entry per attribute value
+   * @return the number of matches for each term that matched at least once, plus the total number
+   *     of tokens under {@link #TOTAL_TOKENS_KEY} when {@code values} is not empty
+   */
+  public Map<String, Integer> countMatches(Iterable<String> values) {
+    Map<String, Integer> matches = new HashMap<>();
+    int[] counts = new int[terms.length];
+    int totalTokens = 0;
+    boolean hasValues = false;
+
+    for (String value : values) {
+      hasValues = true;
+      totalTokens += countMatches(value.toLowerCase(), counts);
+    }
+
+    for (int i = 0; i < counts.length; i++) {
+      if (counts[i] > 0) {
+        matches.put(terms[i], counts[i]);
+      }
+    }
+
+    if (hasValues) {
+      matches.put(TOTAL_TOKENS_KEY, totalTokens);
+    }
+    return matches;
+  }
+
+  /** Splits {@code text} into lines the same way {@link java.io.BufferedReader} does. */
+  private int countMatches(String text, int[] counts) {
+    int tokens = 0;
+    int length = text.length();
+    int lineStart = 0;
+
+    while (lineStart < length) {
+      int lineEnd = lineStart;
+      while (lineEnd < length && !isLineBreak(text.charAt(lineEnd))) {
+        lineEnd++;
+      }
+
+      tokens += countLineMatches(text, lineStart, lineEnd, counts);
+
+      lineStart = lineEnd + 1;
+      if (lineStart < length && text.charAt(lineEnd) == '\r' && text.charAt(lineStart) == '\n') {
+        lineStart++;
+      }
+    }
+    return tokens;
+  }
+
+  /**
+   * Produces the same tokens as {@code line.split("[\\s\\p{Punct}]+")}: an empty line is a single
+   * empty token, a line starting with a delimiter has a leading empty token unless it consists only
+   * of delimiters, and trailing delimiters produce nothing.
+   */
+  private int countLineMatches(String text, int start, int end, int[] counts) {
+    if (start == end) {
+      match(text, start, end, false, counts);
+      return 1;
+    }
+
+    int tokens = 0;
+    int i = start;
+    boolean leadingDelimiter = isDelimiter(text.charAt(start));
+
+    while (i < end) {
+      while (i < end && isDelimiter(text.charAt(i))) {
+        i++;
+      }
+      if (i == end) {
+        break;
+      }
+
+      if (leadingDelimiter) {
+        match(text, start, start, false, counts);
+        tokens++;
+        leadingDelimiter = false;
+      }
+
+      int tokenStart = i;
+      boolean hasLineSeparator = false;
+      while (i < end && !isDelimiter(text.charAt(i))) {
+        hasLineSeparator |= isRegexLineSeparator(text.charAt(i));
+        i++;
+      }
+
+      match(text, tokenStart, i, hasLineSeparator, counts);
+      tokens++;
+    }
+    return tokens;
+  }
+
+  private void match(String text, int start, int end, boolean hasLineSeparator, int[] counts) {
+    exactTerms.match(text, start, end, counts);
+
+    String token = null;
+
+    if (hasLineSeparator) {
+      // '.' does not match these characters, which the glob matcher does not model
+      for (Glob glob : allGlobs) {
+        token = token == null ? text.substring(start, end) : token;
+        if (glob.searchTerm.match(token)) {
+          counts[glob.termIndex]++;
+        }
+      }
+    } else {
+      if (start < end) {
+        char first = text.charAt(start);
+        if (first < ASCII) {
+          matchGlobs(globsByFirstChar[toLowerAscii(first)], text, start, end, counts);
+        }
+      }
+      matchGlobs(unindexedGlobs, text, start, end, counts);
+    }
+
+    for (int i = 0; i < regexTerms.length; i++) {
+      token = token == null ? text.substring(start, end) : token;
+      if (regexTerms[i].match(token)) {
+        counts[regexTermIndexes[i]]++;
+      }
+    }
+  }
+
+  private static void matchGlobs(Glob[] globs, String text, int start, int end, int[] counts) {
+    if (globs == null) {
+      return;
+    }
+    for (Glob glob : globs) {
+      if (glob.matches(text, start, end)) {
+        counts[glob.termIndex]++;
+      }
+    }
+  }
+
+  private static boolean isLineBreak(char c) {
+    return c == '\n' || c == '\r';
+  }
+
+  /** Matches {@code [\s\p{Punct}]} for the default (non-Unicode) character classes. */
+  private static boolean isDelimiter(char c) {
+    switch (c) {
+      case ' ':
+      case '\t':
+      case '\n':
+      case '\u000B':
+      case '\f':
+      case '\r':
+        return true;
+      default:
+        return (c >= '!' && c <= '/')
+            || (c >= ':' && c <= '@')
+            || (c >= '[' && c <= '`')
+            || (c >= '{' && c <= '~');
+    }
+  }
+
+  /** Line terminators, other than carriage return and line feed, that '.' does not match. */
+  private static boolean isRegexLineSeparator(char c) {
+    return c == '\u0085' || c == '\u2028' || c == '\u2029';
+  }
+
+  private static char toLowerAscii(char c) {
+    return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+  }
+
+  /** Compares characters the way {@link Pattern#CASE_INSENSITIVE} does without UNICODE_CASE. */
+  private static boolean equalsIgnoreAsciiCase(char patternChar, char c) {
+    return patternChar == c
+        || (patternChar < ASCII && c < ASCII && toLowerAscii(patternChar) == toLowerAscii(c));
+  }
+
+  /** Open-addressed table of exact terms, probed with a token's characters in place. */
+  private static class ExactTermTable {
+
+    private final String[] keys;
+
+    private final int[] hashes;
+
+    private final int[] termIndexes;
+
+    private final int[] weights;
+
+    private final int mask;
+
+    ExactTermTable(Map<String, Integer> termWeights, Map<String, Integer> termIndexes) {
+      int capacity = Integer.highestOneBit(Math.max(2, termWeights.size() * 2 + 1) - 1) << 1;
+      keys = new String[capacity];
+      hashes = new int[capacity];
+      this.termIndexes = new int[capacity];
+      weights = new int[capacity];
+      mask = capacity - 1;
+
+      termWeights.forEach(
+          (term, weight) -> {
+            int hash = term.hashCode();
+            int slot = spread(hash) & mask;
+            while (keys[slot] != null) {
+              slot = (slot + 1) & mask;
+            }
+            keys[slot] = term;
+            hashes[slot] = hash;
+            this.termIndexes[slot] = termIndexes.get(term);
+            weights[slot] = weight;
+          });
+    }
+
+    void match(String text, int start, int end, int[] counts) {
+      int hash = 0;
+      for (int i = start; i < end; i++) {
+        hash = 31 * hash + text.charAt(i);
+      }
+
+      int length = end - start;
+      int slot = spread(hash) & mask;
+      while (keys[slot] != null) {
+        if (hashes[slot] == hash
+            && keys[slot].length() == length
+            && keys[slot].regionMatches(0, text, start, length)) {
+          counts[termIndexes[slot]] += weights[slot];
+          return;
+        }
+        slot = (slot + 1) & mask;
+      }
+    }
+
+    private static int spread(int hash) {
+      return hash ^ (hash >>> 16);
+    }
+  }
+
+  /**
+   * A wildcard term compiled from its pattern, where {@code .*} is the only regular expression
+   * construct and every other character is a literal.
+   */
+  private static class Glob {
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    private final char[] elements;
+
+    private final boolean[] stars;
+
+    private final SearchTerm searchTerm;
+
+    private final int termIndex;
+
+    private Glob(char[] elements, boolean[] stars, SearchTerm searchTerm, int termIndex) {
+      this.elements = elements;
+      this.stars = stars;
+      this.searchTerm = searchTerm;
+      this.termIndex = termIndex;
+    }
+
+    /** @return the glob for {@code pattern}, or null if it uses other regular expression syntax */
+    static Glob compile(Pattern pattern, SearchTerm searchTerm, int termIndex) {
+      String regex = pattern.pattern();
+      if (pattern.flags() != Pattern.CASE_INSENSITIVE || !regex.startsWith("^")) {
+        return null;
+      }
+
+      char[] elements = new char[regex.length()];
+      boolean[] stars = new boolean[regex.length()];
+      int size = 0;
+      int i = 1;
+      while (i < regex.length()) {
+        char c = regex.charAt(i);
+        if (c == '.' && i + 1 < regex.length() && regex.charAt(i + 1) == '*') {
+          stars[size++] = true;
+          i += 2;
+        } else if (REGEX_METACHARACTERS.indexOf(c) >= 0) {
+          return null;
+        } else {
+          elements[size++] = c;
+          i++;
+        }
+      }
+
+      return new Glob(
+          Arrays.copyOf(elements, size), Arrays.copyOf(stars, size), searchTerm, termIndex);
+    }
+
+    /** @return the lowercased first literal, or -1 if the glob starts with a wildcard */
+    int firstLiteral() {
+      if (elements.length == 0 || stars[0]) {
+        return -1;
+      }
+      return toLowerAscii(elements[0]);
+    }
+
+    /** Greedy wildcard matching that backtracks only to the most recent wildcard. */
+    boolean matches(String text, int start, int end) {
+      int p = 0;
+      int i = start;
+      int starP = -1;
+      int starI = -1;
+
+      while (i < end) {
+        boolean hasElement = p < elements.length;
+        if (hasElement && !stars[p] && equalsIgnoreAsciiCase(elements[p], text.charAt(i))) {
+          p++;
+          i++;
+        } else if (hasElement && stars[p]) {
+          starP = p++;
+          starI = i;
+        } else if (starP >= 0) {
+          p = starP + 1;
+          i = ++starI;
+        } else {
+          return false;
+        }
+      }
+
+      while (p < elements.length && stars[p]) {
+        p++;
+      }
+      return p == elements.length;
+    }
+  }
+}
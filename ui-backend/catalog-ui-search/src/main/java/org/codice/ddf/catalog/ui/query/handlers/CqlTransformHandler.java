@@ -14,6 +14,9 @@
 package org.codice.ddf.catalog.ui.query.handlers;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Iterators;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.PeekingIterator;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import ddf.catalog.data.Attribute;
@@ -29,36 +32,58 @@ import ddf.catalog.source.SourceUnavailableException;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transform.QueryResponseTransformer;
-import ddf.catalog.util.impl.CollectionResultComparator;
 import ddf.catalog.util.impl.DistanceResultComparator;
 import ddf.catalog.util.impl.RelevanceResultComparator;
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Serializable;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import java.util.stream.Collectors;
+import javax.annotation.Nullable;
 import javax.ws.rs.core.HttpHeaders;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.MapUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.apache.tika.mime.MimeTypeException;
 import org.apache.tika.mime.MimeTypes;
 import org.codice.ddf.catalog.ui.CqlParseException;
 import org.codice.ddf.catalog.ui.metacard.transformer.CsvTransformImpl;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequestImpl;
-import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
 import org.codice.ddf.catalog.ui.query.utility.CqlRequest;
+import org.codice.ddf.catalog.ui.query.utility.ExportWriter;
+import org.codice.ddf.catalog.ui.query.utility.StreamingQueryResponseTransformer;
 import org.codice.ddf.catalog.ui.util.CqlQueriesImpl;
 import org.codice.ddf.catalog.ui.util.CswConstants;
 import org.codice.ddf.catalog.ui.util.EndpointUtil;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.codice.gsonsupport.GsonTypeAdapters.DateLongFormatTypeAdapter;
 import org.codice.gsonsupport.GsonTypeAdapters.LongDoubleTypeAdapter;
 import org.eclipse.jetty.http.HttpStatus;
@@ -87,11 +112,28 @@ public class CqlTransformHandler implements Route {
           .registerTypeAdapter(Date.class, new DateLongFormatTypeAdapter())
           .create();
 
+  private static final String SEARCH_THREADS_PROPERTY = "exportSearchThreads";
+
+  private static final String SEARCH_TIMEOUT_PROPERTY = "exportSearchTimeoutSeconds";
+
+  private static final int DEFAULT_SEARCH_THREADS = 8;
+
+  private static final int DEFAULT_SEARCH_TIMEOUT_SECONDS = 300;
+
+  private static final String STREAMING_PROPERTY = "streamingExportEnabled";
+
+  private static final int STREAMING_PAGE_SIZE = 250;
+
   private EndpointUtil util;
   private List<ServiceReference> queryResponseTransformers;
   private BundleContext bundleContext;
   private CqlQueriesImpl cqlQueryUtil;
 
+  private volatile ExecutorService searchExecutor;
+  private int searchThreads = DEFAULT_SEARCH_THREADS;
+  private volatile long searchTimeoutSeconds = DEFAULT_SEARCH_TIMEOUT_SECONDS;
+  private volatile boolean streamingExportEnabled = false;
+
   public CqlTransformHandler(
       List<ServiceReference> queryResponseTransformers,
       BundleContext bundleContext,
@@ -101,6 +143,7 @@ public class CqlTransformHandler implements Route {
     this.bundleContext = bundleContext;
     this.util = endpointUtil;
     this.cqlQueryUtil = cqlQueryUtil;
+    this.searchExecutor = createSearchExecutor(searchThreads);
   }
 
   public class Arguments {
@@ -230,52 +273,6 @@ public class CqlTransformHandler implements Route {
       return ImmutableMap.of("message", "Service not found");
     }
 
-    List<Result> results =
-        cqlRequests
-            .stream()
-            .map(
-                cqlRequest -> {
-                  CqlQueryResponse cqlQueryResponse = null;
-                  try {
-                    cqlQueryResponse = cqlQueryUtil.executeCqlQuery(cqlRequest);
-                  } catch (UnsupportedQueryException
-                      | SourceUnavailableException
-                      | FederationException
-                      | CqlParseException e) {
-                    LOGGER.debug("Error fetching cql request for {}", cqlRequest.getSrc());
-                    return null;
-                  }
-                  return cqlQueryResponse.getQueryResponse().getResults();
-                })
-            .filter(cqlResults -> CollectionUtils.isNotEmpty(cqlResults))
-            .flatMap(cqlResults -> cqlResults.stream())
-            .collect(Collectors.toList());
-
-    results.sort(getResultComparators(cqlTransformRequest.getSorts()));
-
-    results =
-        results.size() > cqlTransformRequest.getCount()
-            ? results.subList(0, cqlTransformRequest.getCount())
-            : results;
-
-    results =
-        CollectionUtils.isEmpty(cqlTransformRequest.getHiddenResults())
-            ? results
-            : results
-                .stream()
-                .filter(
-                    result ->
-                        !cqlTransformRequest
-                            .getHiddenResults()
-                            .contains(result.getMetacard().getId()))
-                .collect(Collectors.toList());
-
-    QueryResponse combinedResponse =
-        new QueryResponseImpl(
-            new QueryRequestImpl(new QueryImpl(ECQL.toFilter(cqlRequests.get(0).getCql()))),
-            results,
-            results.size());
-
     Object schema = queryResponseTransformer.getProperty("schema");
 
     List<String> mimeTypeServiceProperty =
@@ -289,11 +286,444 @@ public class CqlTransformHandler implements Route {
       arguments = cswTransformArgumentsAdapter();
     }
 
-    attachFileToResponse(request, response, queryResponseTransformer, combinedResponse, arguments);
+    QueryResponseTransformer transformer = bundleContext.getService(queryResponseTransformer);
+
+    ExportWriter exportWriter = getExportWriter(transformer, arguments);
+    if (exportWriter != null
+        && streamExport(response, exportWriter, cqlTransformRequest, cqlRequests)) {
+      return "";
+    }
+
+    List<Result> results =
+        selectTopResults(
+            executeSearches(cqlRequests),
+            cqlTransformRequest.getSorts(),
+            getHiddenResults(cqlTransformRequest),
+            cqlTransformRequest.getCount());
+
+    QueryResponse combinedResponse =
+        new QueryResponseImpl(
+            new QueryRequestImpl(new QueryImpl(ECQL.toFilter(cqlRequests.get(0).getCql()))),
+            results,
+            results.size());
+
+    attachFileToResponse(
+        request, response, transformerId, transformer, combinedResponse, arguments);
 
     return "";
   }
 
+  public void refresh(Map<String, Object> configuration) {
+    if (MapUtils.isEmpty(configuration)) {
+      return;
+    }
+
+    Object configuredThreads = configuration.get(SEARCH_THREADS_PROPERTY);
+    if (configuredThreads instanceof Integer) {
+      setExportSearchThreads((Integer) configuredThreads);
+    }
+
+    Object configuredTimeout = configuration.get(SEARCH_TIMEOUT_PROPERTY);
+    if (configuredTimeout instanceof Integer) {
+      setExportSearchTimeoutSeconds((Integer) configuredTimeout);
+    }
+
+    Object configuredStreaming = configuration.get(STREAMING_PROPERTY);
+    if (configuredStreaming instanceof Boolean) {
+      setStreamingExportEnabled((Boolean) configuredStreaming);
+    }
+  }
+
+  /** @param threads number of searches that may run at once, across all exports */
+  public synchronized void setExportSearchThreads(Integer threads) {
+    int size = threads == null || threads < 1 ? DEFAULT_SEARCH_THREADS : threads;
+    if (size == searchThreads && searchExecutor != null) {
+      return;
+    }
+
+    LOGGER.debug("Setting export search threads : {}", size);
+    ExecutorService previous = searchExecutor;
+    searchThreads = size;
+    searchExecutor = createSearchExecutor(size);
+    if (previous != null) {
+      previous.shutdown();
+    }
+  }
+
+  /** @param timeoutSeconds time allowed for all the searches of a single export to complete */
+  public void setExportSearchTimeoutSeconds(Integer timeoutSeconds) {
+    LOGGER.debug("Setting export search timeout : {}s", timeoutSeconds);
+    searchTimeoutSeconds =
+        timeoutSeconds == null || timeoutSeconds < 1
+            ? DEFAULT_SEARCH_TIMEOUT_SECONDS
+            : timeoutSeconds;
+  }
+
+  /**
+   * @param streamingExportEnabled when true, exports whose transformer is a {@link
+   *     StreamingQueryResponseTransformer} are written as the results are read instead of being
+   *     passed to the transformer once every result is read
+   */
+  public void setStreamingExportEnabled(Boolean streamingExportEnabled) {
+    LOGGER.debug("Setting streaming export enabled : {}", streamingExportEnabled);
+    this.streamingExportEnabled = Boolean.TRUE.equals(streamingExportEnabled);
+  }
+
+  public synchronized void destroy() {
+    if (searchExecutor != null) {
+      searchExecutor.shutdownNow();
+      searchExecutor = null;
+    }
+  }
+
+  private static ExecutorService createSearchExecutor(int threads) {
+    return Executors.newFixedThreadPool(
+        threads, StandardThreadFactoryBuilder.newThreadFactory("cqlTransformSearchThread"));
+  }
+
+  /**
+   * Runs every search concurrently on behalf of the current subject. Searches that fail, or that
+   * have not completed once the export's deadline passes, are left out of the export.
+   *
+   * @return the results of each search that completed, in search order
+   */
+  private List<List<Result>> executeSearches(List<CqlRequest> cqlRequests)
+      throws InterruptedException {
+    List<List<Result>> results = new ArrayList<>(cqlRequests.size());
+    for (List<Result> searchResults : invokeSearches(cqlRequests, this::executeSearch)) {
+      if (CollectionUtils.isNotEmpty(searchResults)) {
+        results.add(searchResults);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Starts every search of a streaming export concurrently on behalf of the current subject and
+   * waits, up to the export's deadline, for each to return its first page. Later pages are read
+   * as the export is written, and each of those queries is limited to the same timeout.
+   *
+   * @return each search that started, in search order
+   */
+  private List<StartedSearch> startSearches(List<CqlRequest> cqlRequests)
+      throws InterruptedException {
+    long pageTimeoutMillis = TimeUnit.SECONDS.toMillis(searchTimeoutSeconds);
+    return invokeSearches(
+        cqlRequests,
+        cqlRequest -> {
+          try {
+            Iterator<Result> results =
+                cqlQueryUtil.iterateResults(cqlRequest, STREAMING_PAGE_SIZE, pageTimeoutMillis);
+            // read the first page now, while the other searches are reading theirs
+            List<Result> firstPage = new ArrayList<>(STREAMING_PAGE_SIZE);
+            Iterators.addAll(firstPage, Iterators.limit(results, STREAMING_PAGE_SIZE));
+            return new StartedSearch(firstPage, results);
+          } catch (CqlParseException e) {
+            LOGGER.debug("Error fetching cql request for {}", cqlRequest.getSrc());
+            return null;
+          }
+        });
+  }
+
+  /**
+   * Runs {@code search} for every request concurrently on behalf of the current subject. Searches
+   * that fail, return null, or have not completed once the export's deadline passes are left out.
+   */
+  private <T> List<T> invokeSearches(List<CqlRequest> cqlRequests, Function<CqlRequest, T> search)
+      throws InterruptedException {
+    Subject subject = ThreadContext.getSubject();
+    List<Callable<T>> searches = new ArrayList<>(cqlRequests.size());
+    for (CqlRequest cqlRequest : cqlRequests) {
+      Callable<T> callable = () -> search.apply(cqlRequest);
+      searches.add(subject == null ? callable : subject.associateWith(callable));
+    }
+
+    List<Future<T>> futures =
+        searchExecutor.invokeAll(searches, searchTimeoutSeconds, TimeUnit.SECONDS);
+
+    List<T> results = new ArrayList<>(futures.size());
+    for (int i = 0; i < futures.size(); i++) {
+      try {
+        T searchResults = futures.get(i).get();
+        if (searchResults != null) {
+          results.add(searchResults);
+        }
+      } catch (CancellationException e) {
+        LOGGER.debug(
+            "Cql request for {} did not complete within {} seconds",
+            cqlRequests.get(i).getSrc(),
+            searchTimeoutSeconds);
+      } catch (ExecutionException e) {
+        LOGGER.debug("Error fetching cql request for {}", cqlRequests.get(i).getSrc(), e);
+      }
+    }
+    return results;
+  }
+
+  private List<Result> executeSearch(CqlRequest cqlRequest) {
+    try {
+      return cqlQueryUtil.executeCqlQuery(cqlRequest).getQueryResponse().getResults();
+    } catch (UnsupportedQueryException
+        | SourceUnavailableException
+        | FederationException
+        | CqlParseException e) {
+      LOGGER.debug("Error fetching cql request for {}", cqlRequest.getSrc());
+      return null;
+    }
+  }
+
+  /**
+   * Streams the export directly to the response. Each search is read lazily, one page at a time,
+   * and the searches are merged in sort order as they are written, so memory use does not grow
+   * with the size of the export. The searches are started concurrently and are subject to the same
+   * timeout as the buffered export.
+   *
+   * <p>Merging relies on each search being sorted. A search whose results fit in its first page is
+   * sorted here. Otherwise its first page must already be in sort order, since not every source
+   * honors the requested sort; if it is not, nothing is written and the export is left to the
+   * buffered path.
+   *
+   * @return true if the export was written, or false if it could not be streamed
+   */
+  private boolean streamExport(
+      Response response,
+      ExportWriter exportWriter,
+      CqlTransformRequest cqlTransformRequest,
+      List<CqlRequest> cqlRequests)
+      throws IOException, MimeTypeException, InterruptedException {
+    List<StartedSearch> searches =
+        cqlTransformRequest.getCount() > 0 ? startSearches(cqlRequests) : Collections.emptyList();
+
+    Set<String> hiddenResults = getHiddenResults(cqlTransformRequest);
+    List<CqlRequest.Sort> sorts = cqlTransformRequest.getSorts();
+    Comparator<SortableResult> comparator = getResultComparator(sorts);
+
+    List<Iterator<SortableResult>> sortableSearches = new ArrayList<>(searches.size());
+    for (StartedSearch search : searches) {
+      List<SortableResult> firstPage = toSortable(search.firstPage, hiddenResults, sorts);
+      if (search.isComplete()) {
+        firstPage.sort(comparator);
+      } else if (!Ordering.from(comparator).isOrdered(firstPage)) {
+        LOGGER.debug("Search results are not in sort order, not streaming the export");
+        return false;
+      }
+
+      sortableSearches.add(
+          Iterators.concat(
+              firstPage.iterator(),
+              Iterators.transform(
+                  Iterators.filter(search.remaining, result -> isExported(result, hiddenResults)),
+                  result -> new SortableResult(result, getSortValues(result, sorts), 0))));
+    }
+
+    Iterator<Result> results =
+        Iterators.limit(
+            Iterators.transform(
+                mergeSorted(sortableSearches, comparator), SortableResult::getResult),
+            Math.max(0, cqlTransformRequest.getCount()));
+
+    setHttpHeaders(response, exportWriter.getMimeType());
+    response.status(HttpStatus.OK_200);
+
+    int exported = 0;
+    try (Writer writer =
+        new BufferedWriter(
+            new OutputStreamWriter(
+                response.raw().getOutputStream(), StandardCharsets.UTF_8))) {
+      exportWriter.start(writer);
+      while (results.hasNext()) {
+        exportWriter.write(results.next());
+        exported++;
+      }
+      exportWriter.finish();
+    }
+
+    LOGGER.trace("Successfully streamed {} results as {}", exported, exportWriter.getMimeType());
+    return true;
+  }
+
+  private static List<SortableResult> toSortable(
+      List<Result> results, Set<String> hiddenResults, List<CqlRequest.Sort> sorts) {
+    List<SortableResult> sortable = new ArrayList<>(results.size());
+    for (Result result : results) {
+      if (isExported(result, hiddenResults)) {
+        sortable.add(new SortableResult(result, getSortValues(result, sorts), 0));
+      }
+    }
+    return sortable;
+  }
+
+  private static boolean isExported(Result result, Set<String> hiddenResults) {
+    return result.getMetacard() != null && !isHidden(result, hiddenResults);
+  }
+
+  /**
+   * @return a writer that can stream the export, or null if streaming is disabled or the export
+   *     can only be produced by {@link QueryResponseTransformer#transform}
+   */
+  @Nullable
+  private ExportWriter getExportWriter(
+      QueryResponseTransformer transformer, Map<String, Serializable> arguments)
+      throws CatalogTransformerException {
+    if (!streamingExportEnabled || !(transformer instanceof StreamingQueryResponseTransformer)) {
+      return null;
+    }
+
+    return ((StreamingQueryResponseTransformer) transformer).createExportWriter(arguments);
+  }
+
+  /**
+   * Selects the first {@code count} results of all the searches in {@code sorts} order without
+   * sorting every result. Hidden results are removed before selecting, so the export still has
+   * {@code count} results when enough are found. The sort values of each result are read from its
+   * metacard once, rather than on every comparison. Results that compare equal keep their search
+   * order.
+   */
+  static List<Result> selectTopResults(
+      List<List<Result>> searchResults,
+      List<CqlRequest.Sort> sorts,
+      Set<String> hiddenResults,
+      int count) {
+    if (count <= 0) {
+      return new ArrayList<>();
+    }
+
+    Comparator<SortableResult> comparator =
+        getResultComparator(sorts).thenComparingInt(SortableResult::getOrder);
+    int total = searchResults.stream().mapToInt(List::size).sum();
+
+    // Holds the best results found so far, with the worst of them at the head
+    PriorityQueue<SortableResult> selected =
+        new PriorityQueue<>(Math.max(1, Math.min(count, total)), comparator.reversed());
+
+    int order = 0;
+    for (List<Result> results : searchResults) {
+      for (Result result : results) {
+        if (isHidden(result, hiddenResults)) {
+          continue;
+        }
+
+        SortableResult candidate =
+            new SortableResult(result, getSortValues(result, sorts), order++);
+        if (selected.size() < count) {
+          selected.add(candidate);
+        } else if (comparator.compare(candidate, selected.peek()) < 0) {
+          selected.poll();
+          selected.add(candidate);
+        }
+      }
+    }
+
+    List<SortableResult> sorted = new ArrayList<>(selected);
+    sorted.sort(comparator);
+    return sorted.stream().map(SortableResult::getResult).collect(Collectors.toList());
+  }
+
+  /**
+   * Lazily merges searches that are each sorted in {@code comparator} order. Elements that compare
+   * equal keep their search order.
+   */
+  static <T> Iterator<T> mergeSorted(
+      List<? extends Iterator<T>> sortedSearches, Comparator<? super T> comparator) {
+    PriorityQueue<SearchCursor<T>> cursors =
+        new PriorityQueue<>(
+            Math.max(1, sortedSearches.size()),
+            Comparator.<SearchCursor<T>, T>comparing(cursor -> cursor.elements.peek(), comparator)
+                .thenComparingInt(cursor -> cursor.search));
+
+    for (int i = 0; i < sortedSearches.size(); i++) {
+      PeekingIterator<T> elements = Iterators.peekingIterator(sortedSearches.get(i));
+      if (elements.hasNext()) {
+        cursors.add(new SearchCursor<>(i, elements));
+      }
+    }
+
+    return new Iterator<T>() {
+      @Override
+      public boolean hasNext() {
+        return !cursors.isEmpty();
+      }
+
+      @Override
+      public T next() {
+        SearchCursor<T> cursor = cursors.poll();
+        if (cursor == null) {
+          throw new NoSuchElementException();
+        }
+
+        T element = cursor.elements.next();
+        if (cursor.elements.hasNext()) {
+          cursors.add(cursor);
+        }
+        return element;
+      }
+    };
+  }
+
+  private static Set<String> getHiddenResults(CqlTransformRequest cqlTransformRequest) {
+    return CollectionUtils.isEmpty(cqlTransformRequest.getHiddenResults())
+        ? Collections.emptySet()
+        : new HashSet<>(cqlTransformRequest.getHiddenResults());
+  }
+
+  private static boolean isHidden(Result result, Set<String> hiddenResults) {
+    return result.getMetacard() != null && hiddenResults.contains(result.getMetacard().getId());
+  }
+
+  /** A streamed search whose first page has been read. */
+  private static class StartedSearch {
+
+    private final List<Result> firstPage;
+
+    private final Iterator<Result> remaining;
+
+    private StartedSearch(List<Result> firstPage, Iterator<Result> remaining) {
+      this.firstPage = firstPage;
+      this.remaining = remaining;
+    }
+
+    /** @return true if every result of the search is in its first page */
+    private boolean isComplete() {
+      return firstPage.size() < STREAMING_PAGE_SIZE;
+    }
+  }
+
+  private static class SearchCursor<T> {
+
+    private final int search;
+
+    private final PeekingIterator<T> elements;
+
+    private SearchCursor(int search, PeekingIterator<T> elements) {
+      this.search = search;
+      this.elements = elements;
+    }
+  }
+
+  /** A result together with its attribute sort values, so they are only read once. */
+  private static class SortableResult {
+
+    private final Result result;
+
+    private final Comparable[] sortValues;
+
+    private final int order;
+
+    private SortableResult(Result result, Comparable[] sortValues, int order) {
+      this.result = result;
+      this.sortValues = sortValues;
+      this.order = order;
+    }
+
+    private Result getResult() {
+      return result;
+    }
+
+    private int getOrder() {
+      return order;
+    }
+  }
+
   public List<ServiceReference> getQueryResponseTransformers() {
     return queryResponseTransformers;
   }
@@ -307,6 +737,10 @@ public class CqlTransformHandler implements Route {
       throw new IllegalArgumentException("Binary Content contains null mime-type value.");
     }
 
+    setHttpHeaders(response, mimeType);
+  }
+
+  private void setHttpHeaders(Response response, String mimeType) throws MimeTypeException {
     String fileExt = getFileExtFromMimeType(mimeType);
 
     response.type(mimeType);
@@ -327,12 +761,12 @@ public class CqlTransformHandler implements Route {
   private void attachFileToResponse(
       Request request,
       Response response,
-      ServiceReference<QueryResponseTransformer> queryResponseTransformer,
+      String transformerId,
+      QueryResponseTransformer queryResponseTransformer,
       QueryResponse cqlQueryResponse,
       Map<String, Serializable> arguments)
       throws CatalogTransformerException, IOException, MimeTypeException {
-    BinaryContent content =
-        bundleContext.getService(queryResponseTransformer).transform(cqlQueryResponse, arguments);
+    BinaryContent content = queryResponseTransformer.transform(cqlQueryResponse, arguments);
 
     setHttpHeaders(request, response, content);
 
@@ -343,42 +777,64 @@ public class CqlTransformHandler implements Route {
 
     response.status(HttpStatus.OK_200);
 
-    LOGGER.trace(
-        "Successfully output file using transformer id {}",
-        queryResponseTransformer.getProperty("id"));
+    LOGGER.trace("Successfully output file using transformer id {}", transformerId);
   }
 
-  private CollectionResultComparator getResultComparators(List<CqlRequest.Sort> sorts) {
-    CollectionResultComparator resultComparator = new CollectionResultComparator();
+  private static Comparator<SortableResult> getResultComparator(List<CqlRequest.Sort> sorts) {
+    Comparator<SortableResult> resultComparator = (first, second) -> 0;
     if (sorts == null) {
       return resultComparator;
     }
-    for (CqlRequest.Sort sort : sorts) {
-      Comparator<Result> comparator;
+    for (int i = 0; i < sorts.size(); i++) {
+      Comparator<SortableResult> comparator;
 
-      String sortType = sort.getAttribute();
-      SortOrder sortOrder =
-          (sort.getDirection() != null && sort.getDirection().equals("descending"))
-              ? SortOrder.DESCENDING
-              : SortOrder.ASCENDING;
+      String sortType = sorts.get(i).getAttribute();
+      SortOrder sortOrder = getSortOrder(sorts.get(i));
 
       if (Result.RELEVANCE.equals(sortType)) {
-        comparator = new RelevanceResultComparator(sortOrder);
+        comparator =
+            Comparator.comparing(
+                SortableResult::getResult, new RelevanceResultComparator(sortOrder));
       } else if (Result.DISTANCE.equals(sortType)) {
-        comparator = new DistanceResultComparator(sortOrder);
-      } else {
         comparator =
             Comparator.comparing(
-                r -> getAttributeValue((Result) r, sortType),
+                SortableResult::getResult, new DistanceResultComparator(sortOrder));
+      } else {
+        int index = i;
+        comparator =
+            Comparator.<SortableResult, Comparable>comparing(
+                sortable -> sortable.sortValues[index],
                 ((sortOrder == SortOrder.ASCENDING)
                     ? Comparator.nullsLast(Comparator.<Comparable>naturalOrder())
                     : Comparator.nullsLast(Comparator.<Comparable>reverseOrder())));
       }
-      resultComparator.addComparator(comparator);
+      resultComparator = resultComparator.thenComparing(comparator);
     }
     return resultComparator;
   }
 
+  private static SortOrder getSortOrder(CqlRequest.Sort sort) {
+    return (sort.getDirection() != null && sort.getDirection().equals("descending"))
+        ? SortOrder.DESCENDING
+        : SortOrder.ASCENDING;
+  }
+
+  /** @return the value of each attribute sort, or null for relevance and distance sorts */
+  private static Comparable[] getSortValues(Result result, List<CqlRequest.Sort> sorts) {
+    if (sorts == null) {
+      return new Comparable[0];
+    }
+
+    Comparable[] sortValues = new Comparable[sorts.size()];
+    for (int i = 0; i < sortValues.length; i++) {
+      String sortType = sorts.get(i).getAttribute();
+      if (!Result.RELEVANCE.equals(sortType) && !Result.DISTANCE.equals(sortType)) {
+        sortValues[i] = getAttributeValue(result, sortType);
+      }
+    }
+    return sortValues;
+  }
+
   private static Comparable getAttributeValue(Result result, String attributeName) {
     final Attribute attribute = result.getMetacard().getAttribute(attributeName);
 
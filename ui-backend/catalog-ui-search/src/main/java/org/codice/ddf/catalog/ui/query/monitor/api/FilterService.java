@@ -29,4 +29,13 @@ public interface FilterService {
   Filter buildMetacardIdFilter(String id);
 
   Filter getModifiedDateFilter(Date lastCheckDate);
+
+  /**
+   * Build a filter for matching metacards that changed after a watermark. Metacards modified at
+   * the same instant as the watermark only match if their id sorts after the watermark id.
+   *
+   * @param watermark must be non-null
+   * @return filter
+   */
+  Filter getModifiedAfterFilter(QueryWatermark watermark);
 }
@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.api;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * The newest change the workspace query monitor has seen for a workspace. Changes are ordered by
+ * their modified date, and then by metacard id for changes modified at the same instant.
+ */
+public final class QueryWatermark implements Comparable<QueryWatermark> {
+
+  private final Date modified;
+
+  private final String id;
+
+  /**
+   * @param modified must be non-null
+   * @param id must be non-null
+   */
+  public QueryWatermark(Date modified, String id) {
+    notNull(modified, "modified must be non-null");
+    notNull(id, "id must be non-null");
+    this.modified = new Date(modified.getTime());
+    this.id = id;
+  }
+
+  public Date getModified() {
+    return new Date(modified.getTime());
+  }
+
+  public String getId() {
+    return id;
+  }
+
+  @Override
+  public int compareTo(QueryWatermark other) {
+    int result = modified.compareTo(other.modified);
+    return result != 0 ? result : id.compareTo(other.id);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    QueryWatermark that = (QueryWatermark) o;
+    return modified.equals(that.modified) && id.equals(that.id);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(modified, id);
+  }
+
+  @Override
+  public String toString() {
+    return "QueryWatermark{" + "modified=" + modified.toInstant() + ", id='" + id + '\'' + '}';
+  }
+}
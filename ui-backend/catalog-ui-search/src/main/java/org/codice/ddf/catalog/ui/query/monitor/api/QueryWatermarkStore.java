@@ -0,0 +1,38 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.api;
+
+import java.util.Map;
+import java.util.Set;
+
+/** Persists the {@link QueryWatermark} of each workspace monitored for email notifications. */
+public interface QueryWatermarkStore {
+
+  /**
+   * Get the watermarks of a set of workspaces.
+   *
+   * @param workspaceIds must be non-null
+   * @return map of workspace identifiers to watermarks, without the workspaces that do not have a
+   *     watermark yet (non-null)
+   */
+  Map<String, QueryWatermark> getWatermarks(Set<String> workspaceIds);
+
+  /**
+   * Set the watermark of a workspace.
+   *
+   * @param workspaceId must be non-blank
+   * @param watermark must be non-null
+   */
+  void setWatermark(String workspaceId, QueryWatermark watermark);
+}
@@ -16,6 +16,7 @@ package org.codice.ddf.catalog.ui.query.monitor.api;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.function.Predicate;
 import org.apache.commons.lang3.tuple.Pair;
 import org.codice.ddf.catalog.ui.metacard.query.data.metacard.QueryMetacardImpl;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
@@ -53,6 +54,16 @@ public interface WorkspaceService {
    */
   Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> getQueryMetacards();
 
+  /**
+   * Like {@link #getQueryMetacards()}, but only for the workspaces whose ids are accepted by {@code
+   * workspaceIdFilter}. The filter is applied before the workspaces are loaded.
+   *
+   * @param workspaceIdFilter must be non-null
+   * @return map of workspace metacards to a list of query metacards
+   */
+  Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> getQueryMetacards(
+      Predicate<String> workspaceIdFilter);
+
   /**
    * Uses {@link #getWorkspaceMetacards(Set)} to get a single workspace metacard.
    *
@@ -0,0 +1,93 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.email;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/** Counts the emails handed to the {@link EmailNotifier} and what became of them. */
+public class EmailDeliveryMetrics {
+
+  private final IntSupplier queueDepth;
+
+  private final AtomicLong queued = new AtomicLong();
+
+  private final AtomicLong sent = new AtomicLong();
+
+  private final AtomicLong retried = new AtomicLong();
+
+  private final AtomicLong failed = new AtomicLong();
+
+  /** @param queueDepth supplies the number of emails waiting for a delivery thread */
+  public EmailDeliveryMetrics(IntSupplier queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  void recordQueued() {
+    queued.incrementAndGet();
+  }
+
+  void recordSent() {
+    sent.incrementAndGet();
+  }
+
+  void recordRetried() {
+    retried.incrementAndGet();
+  }
+
+  void recordFailed() {
+    failed.incrementAndGet();
+  }
+
+  /** @return the number of emails waiting for a delivery thread, including scheduled retries */
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  /** @return the number of emails queued for delivery */
+  public long getQueued() {
+    return queued.get();
+  }
+
+  /** @return the number of emails the SMTP server accepted */
+  public long getSent() {
+    return sent.get();
+  }
+
+  /** @return the number of delivery attempts that failed and were scheduled to be retried */
+  public long getRetried() {
+    return retried.get();
+  }
+
+  /** @return the number of emails that could not be delivered, including those dropped */
+  public long getFailed() {
+    return failed.get();
+  }
+
+  @Override
+  public String toString() {
+    return "EmailDeliveryMetrics{"
+        + "queueDepth="
+        + getQueueDepth()
+        + ", queued="
+        + getQueued()
+        + ", sent="
+        + getSent()
+        + ", retried="
+        + getRetried()
+        + ", failed="
+        + getFailed()
+        + '}';
+  }
+}
@@ -16,7 +16,15 @@ package org.codice.ddf.catalog.ui.query.monitor.email;
 import static org.apache.commons.lang3.Validate.notBlank;
 import static org.apache.commons.lang3.Validate.notNull;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.mail.Message;
 import javax.mail.MessagingException;
 import javax.mail.Session;
@@ -28,14 +36,28 @@ import org.codice.ddf.catalog.ui.query.monitor.api.MetacardFormatter;
 import org.codice.ddf.catalog.ui.query.monitor.api.QueryUpdateSubscriber;
 import org.codice.ddf.catalog.ui.subscription.SubscriptionsPersistentStore;
 import org.codice.ddf.platform.email.SmtpClient;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-/** Sends an email for each workspace to the owner of the workspace. */
+/**
+ * Sends an email for each workspace to the owner of the workspace. The emails are queued and
+ * delivered by a small pool of threads so that the caller does not wait on the SMTP server. Failed
+ * deliveries are retried with an exponential backoff. Once too many emails are waiting to be
+ * delivered or retried, further emails are dropped and counted as failed.
+ */
 public class EmailNotifier implements QueryUpdateSubscriber {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(EmailNotifier.class);
 
+  private static final int DEFAULT_DELIVERY_THREADS = 4;
+
+  private static final int DEFAULT_MAX_DELIVERY_ATTEMPTS = 3;
+
+  private static final long DEFAULT_RETRY_DELAY_SECONDS = 30;
+
+  private static final int DEFAULT_MAX_PENDING_DELIVERIES = 1000;
+
   private final MetacardFormatter metacardFormatter;
 
   private String bodyTemplate;
@@ -48,6 +70,23 @@ public class EmailNotifier implements QueryUpdateSubscriber {
 
   private SmtpClient smtpClient;
 
+  private final ScheduledThreadPoolExecutor deliveryExecutor =
+      new ScheduledThreadPoolExecutor(
+          DEFAULT_DELIVERY_THREADS,
+          StandardThreadFactoryBuilder.newThreadFactory("emailNotifierThread"));
+
+  private final EmailDeliveryMetrics metrics =
+      new EmailDeliveryMetrics(() -> deliveryExecutor.getQueue().size());
+
+  private volatile int maxDeliveryAttempts = DEFAULT_MAX_DELIVERY_ATTEMPTS;
+
+  private volatile long retryDelaySeconds = DEFAULT_RETRY_DELAY_SECONDS;
+
+  private volatile int maxPendingDeliveries = DEFAULT_MAX_PENDING_DELIVERIES;
+
+  /** Emails that have been queued and are not yet sent or failed, including scheduled retries. */
+  private final AtomicInteger pendingDeliveries = new AtomicInteger();
+
   /**
    * The {@code bodyTemplate} and {@code subjectTemplate} may contain the tags supported by the
    * {@code metacardFormatter}.
@@ -83,6 +122,17 @@ public class EmailNotifier implements QueryUpdateSubscriber {
     this.smtpClient = smtpClient;
   }
 
+  public void destroy() {
+    List<Runnable> pending = deliveryExecutor.shutdownNow();
+    if (!pending.isEmpty()) {
+      LOGGER.info("Discarding {} queued workspace notification emails", pending.size());
+    }
+  }
+
+  public EmailDeliveryMetrics getMetrics() {
+    return metrics;
+  }
+
   /**
    * The template string used for the email body.
    *
@@ -119,32 +169,101 @@ public class EmailNotifier implements QueryUpdateSubscriber {
     this.fromEmail = fromEmail.trim();
   }
 
+  /**
+   * The number of threads that deliver emails.
+   *
+   * @param deliveryThreads must be non-null
+   */
+  @SuppressWarnings("unused")
+  public void setDeliveryThreads(Integer deliveryThreads) {
+    notNull(deliveryThreads, "deliveryThreads must be non-null");
+    LOGGER.debug("Setting deliveryThreads : {}", deliveryThreads);
+    deliveryExecutor.setCorePoolSize(Math.max(1, deliveryThreads));
+  }
+
+  /**
+   * The number of times an email is sent before giving up on it.
+   *
+   * @param maxDeliveryAttempts must be non-null
+   */
+  @SuppressWarnings("unused")
+  public void setMaxDeliveryAttempts(Integer maxDeliveryAttempts) {
+    notNull(maxDeliveryAttempts, "maxDeliveryAttempts must be non-null");
+    LOGGER.debug("Setting maxDeliveryAttempts : {}", maxDeliveryAttempts);
+    this.maxDeliveryAttempts = Math.max(1, maxDeliveryAttempts);
+  }
+
+  /**
+   * The number of seconds to wait before the first retry of an email. The wait doubles with each
+   * retry.
+   *
+   * @param retryDelaySeconds must be non-null
+   */
+  @SuppressWarnings("unused")
+  public void setRetryDelaySeconds(Long retryDelaySeconds) {
+    notNull(retryDelaySeconds, "retryDelaySeconds must be non-null");
+    LOGGER.debug("Setting retryDelaySeconds : {}", retryDelaySeconds);
+    this.retryDelaySeconds = Math.max(0, retryDelaySeconds);
+  }
+
+  /**
+   * The number of emails that may be waiting to be delivered or retried at once. Emails beyond
+   * this are dropped.
+   *
+   * @param maxPendingDeliveries must be non-null
+   */
+  @SuppressWarnings("unused")
+  public void setMaxPendingDeliveries(Integer maxPendingDeliveries) {
+    notNull(maxPendingDeliveries, "maxPendingDeliveries must be non-null");
+    LOGGER.debug("Setting maxPendingDeliveries : {}", maxPendingDeliveries);
+    this.maxPendingDeliveries = Math.max(1, maxPendingDeliveries);
+  }
+
   @Override
   public void notify(Map<String, Pair<WorkspaceMetacardImpl, Long>> workspaceMetacardMap) {
     notNull(workspaceMetacardMap, "workspaceMetacardMap must be non-null");
+    if (workspaceMetacardMap.isEmpty()) {
+      return;
+    }
+    Map<String, Set<String>> emailsById =
+        subscriptionsPersistentStore.getEmails(
+            workspaceMetacardMap
+                .values()
+                .stream()
+                .map(pair -> pair.getLeft().getId())
+                .collect(Collectors.toSet()));
+    if (emailsById.isEmpty()) {
+      return;
+    }
+
+    Session session = smtpClient.createSession();
     workspaceMetacardMap
         .values()
-        .forEach(pair -> sendEmailsForWorkspace(pair.getLeft(), pair.getRight()));
-  }
-
-  private void sendEmailsForWorkspace(WorkspaceMetacardImpl workspaceMetacard, Long hitCount) {
-    subscriptionsPersistentStore
-        .getEmails(workspaceMetacard.getId())
-        .forEach(email -> sendEmailForWorkspace(workspaceMetacard, hitCount, email));
+        .forEach(
+            pair ->
+                queueEmailsForWorkspace(
+                    session,
+                    pair.getLeft(),
+                    pair.getRight(),
+                    emailsById.getOrDefault(pair.getLeft().getId(), Collections.emptySet())));
   }
 
-  private void sendEmailForWorkspace(
-      WorkspaceMetacardImpl workspaceMetacard, Long hitCount, String email) {
+  private void queueEmailsForWorkspace(
+      Session session, WorkspaceMetacardImpl workspaceMetacard, Long hitCount, Set<String> emails) {
+    if (emails.isEmpty()) {
+      return;
+    }
 
     String emailBody = metacardFormatter.format(bodyTemplate, workspaceMetacard, hitCount);
 
     String subject = metacardFormatter.format(subjectTemplate, workspaceMetacard, hitCount);
 
-    Session session = smtpClient.createSession();
+    emails.forEach(email -> queueEmail(session, subject, emailBody, email));
+  }
 
+  private void queueEmail(Session session, String subject, String emailBody, String email) {
+    MimeMessage mimeMessage = new MimeMessage(session);
     try {
-      MimeMessage mimeMessage = new MimeMessage(session);
-
       mimeMessage.setFrom(new InternetAddress(fromEmail));
 
       mimeMessage.addRecipient(Message.RecipientType.TO, new InternetAddress(email));
@@ -152,13 +271,71 @@ public class EmailNotifier implements QueryUpdateSubscriber {
       mimeMessage.setSubject(subject);
 
       mimeMessage.setText(emailBody);
+    } catch (MessagingException e) {
+      LOGGER.warn("unable to send email to {}", email, e);
+      metrics.recordFailed();
+      return;
+    }
 
-      LOGGER.trace("Attempting to send email");
+    if (pendingDeliveries.incrementAndGet() > maxPendingDeliveries) {
+      pendingDeliveries.decrementAndGet();
+      LOGGER.warn(
+          "Unable to send email to {}, {} emails are already waiting to be delivered",
+          email,
+          maxPendingDeliveries);
+      metrics.recordFailed();
+      return;
+    }
 
-      smtpClient.send(mimeMessage);
+    metrics.recordQueued();
+    deliveryExecutor.execute(new EmailDelivery(mimeMessage, email));
+  }
 
-    } catch (MessagingException e) {
-      LOGGER.warn("unable to send email to {}", email, e);
+  /** Sends one email, rescheduling itself when the attempt fails and attempts remain. */
+  private class EmailDelivery implements Runnable {
+
+    private final MimeMessage mimeMessage;
+
+    private final String email;
+
+    private int attempts = 0;
+
+    private EmailDelivery(MimeMessage mimeMessage, String email) {
+      this.mimeMessage = mimeMessage;
+      this.email = email;
+    }
+
+    @Override
+    public void run() {
+      attempts++;
+      try {
+        LOGGER.trace("Attempting to send email");
+        smtpClient.send(mimeMessage).get();
+        pendingDeliveries.decrementAndGet();
+        metrics.recordSent();
+      } catch (ExecutionException e) {
+        retryOrFail(e.getCause());
+      } catch (InterruptedException e) {
+        LOGGER.warn("Interrupted while sending email to {}", email, e);
+        pendingDeliveries.decrementAndGet();
+        metrics.recordFailed();
+        Thread.currentThread().interrupt();
+      } catch (RuntimeException e) {
+        retryOrFail(e);
+      }
+    }
+
+    private void retryOrFail(Throwable cause) {
+      if (attempts < maxDeliveryAttempts && !deliveryExecutor.isShutdown()) {
+        long delay = retryDelaySeconds << Math.min(attempts - 1, 16);
+        LOGGER.debug("Unable to send email to {}, retrying in {} seconds", email, delay, cause);
+        metrics.recordRetried();
+        deliveryExecutor.schedule(this, delay, TimeUnit.SECONDS);
+      } else {
+        LOGGER.warn("unable to send email to {} after {} attempts", email, attempts, cause);
+        pendingDeliveries.decrementAndGet();
+        metrics.recordFailed();
+      }
     }
   }
 
@@ -0,0 +1,99 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Optional;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * An exclusive lease on a {@link WorkspacePartition}, held as a lock on a file in a directory
+ * shared by the nodes of a cluster. It keeps two nodes that were given the same partition from
+ * monitoring it at the same time. The lock is released when the lease is closed or the JVM exits.
+ */
+public class FilePartitionLease implements AutoCloseable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(FilePartitionLease.class);
+
+  private final FileChannel channel;
+
+  private final FileLock lock;
+
+  private FilePartitionLease(FileChannel channel, FileLock lock) {
+    this.channel = channel;
+    this.lock = lock;
+  }
+
+  /**
+   * @param directory the shared lease directory (must be non-null)
+   * @param partition the partition to lease (must be non-null)
+   * @return the lease, or empty if another node or thread holds it or it could not be taken
+   */
+  public static Optional<FilePartitionLease> tryAcquire(
+      Path directory, WorkspacePartition partition) {
+    notNull(directory, "directory must be non-null");
+    notNull(partition, "partition must be non-null");
+
+    Path leaseFile =
+        directory.resolve(
+            String.format(
+                "workspace-monitor-%d-of-%d.lock", partition.getIndex(), partition.getCount()));
+    FileChannel channel = null;
+    try {
+      Files.createDirectories(directory);
+      channel = FileChannel.open(leaseFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+      FileLock lock = channel.tryLock();
+      if (lock != null) {
+        return Optional.of(new FilePartitionLease(channel, lock));
+      }
+    } catch (OverlappingFileLockException e) {
+      LOGGER.debug("The lease {} is already held by this JVM", leaseFile, e);
+    } catch (IOException e) {
+      LOGGER.warn("Unable to take the lease {}", leaseFile, e);
+    }
+    closeQuietly(channel);
+    return Optional.empty();
+  }
+
+  private static void closeQuietly(FileChannel channel) {
+    if (channel == null) {
+      return;
+    }
+    try {
+      channel.close();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to close a lease file", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      lock.release();
+    } catch (IOException e) {
+      LOGGER.debug("Unable to release a lease", e);
+    } finally {
+      closeQuietly(channel);
+    }
+  }
+}
@@ -18,10 +18,15 @@ import ddf.catalog.filter.FilterBuilder;
 import java.util.Date;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceConstants;
 import org.codice.ddf.catalog.ui.query.monitor.api.FilterService;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermark;
+import org.geotools.factory.CommonFactoryFinder;
 import org.opengis.filter.Filter;
+import org.opengis.filter.FilterFactory;
 
 public class FilterServiceImpl implements FilterService {
 
+  private static final FilterFactory FILTER_FACTORY = CommonFactoryFinder.getFilterFactory();
+
   private final FilterBuilder filterBuilder;
 
   public FilterServiceImpl(FilterBuilder filterBuilder) {
@@ -47,6 +52,16 @@ public class FilterServiceImpl implements FilterService {
     return filterBuilder.attribute(Metacard.MODIFIED).after().date(lastCheckDate);
   }
 
+  @Override
+  public Filter getModifiedAfterFilter(QueryWatermark watermark) {
+    return filterBuilder.anyOf(
+        getModifiedDateFilter(watermark.getModified()),
+        filterBuilder.allOf(
+            filterBuilder.attribute(Metacard.MODIFIED).is().equalTo().date(watermark.getModified()),
+            FILTER_FACTORY.greater(
+                FILTER_FACTORY.property(Metacard.ID), FILTER_FACTORY.literal(watermark.getId()))));
+  }
+
   @Override
   public String toString() {
     return "FilterServiceImpl{" + "filterBuilder=" + filterBuilder + '}';
@@ -0,0 +1,95 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LongSummaryStatistics;
+import java.util.Map;
+
+/** Counts latencies, in milliseconds, in fixed buckets. */
+public class LatencyHistogram {
+
+  private static final long[] BUCKET_BOUNDS = {
+    10, 50, 100, 250, 500, 1_000, 2_500, 5_000, 10_000, 30_000, 60_000
+  };
+
+  private final long[] counts;
+
+  private final LongSummaryStatistics statistics;
+
+  LatencyHistogram() {
+    this(new long[BUCKET_BOUNDS.length + 1], new LongSummaryStatistics());
+  }
+
+  private LatencyHistogram(long[] counts, LongSummaryStatistics statistics) {
+    this.counts = counts;
+    this.statistics = statistics;
+  }
+
+  synchronized void record(long latencyMillis) {
+    int bucket = Arrays.binarySearch(BUCKET_BOUNDS, latencyMillis);
+    counts[bucket >= 0 ? bucket : -bucket - 1]++;
+    statistics.accept(latencyMillis);
+  }
+
+  synchronized LatencyHistogram copy() {
+    LongSummaryStatistics statisticsCopy = new LongSummaryStatistics();
+    statisticsCopy.combine(statistics);
+    return new LatencyHistogram(counts.clone(), statisticsCopy);
+  }
+
+  public synchronized long getCount() {
+    return statistics.getCount();
+  }
+
+  public synchronized long getMin() {
+    return statistics.getCount() > 0 ? statistics.getMin() : 0;
+  }
+
+  public synchronized long getMax() {
+    return statistics.getCount() > 0 ? statistics.getMax() : 0;
+  }
+
+  public synchronized double getAverage() {
+    return statistics.getAverage();
+  }
+
+  /**
+   * @return the number of latencies in each bucket, keyed by the upper bound of the bucket, such as
+   *     {@code "<=100"}, and {@code ">60000"} for the last one
+   */
+  public synchronized Map<String, Long> getBuckets() {
+    Map<String, Long> buckets = new LinkedHashMap<>();
+    for (int i = 0; i < BUCKET_BOUNDS.length; i++) {
+      buckets.put("<=" + BUCKET_BOUNDS[i], counts[i]);
+    }
+    buckets.put(">" + BUCKET_BOUNDS[BUCKET_BOUNDS.length - 1], counts[BUCKET_BOUNDS.length]);
+    return buckets;
+  }
+
+  @Override
+  public synchronized String toString() {
+    return "LatencyHistogram{"
+        + "count="
+        + getCount()
+        + ", min="
+        + getMin()
+        + ", max="
+        + getMax()
+        + ", average="
+        + getAverage()
+        + '}';
+  }
+}
@@ -13,21 +13,31 @@
  */
 package org.codice.ddf.catalog.ui.query.monitor.impl;
 
+import static org.apache.commons.lang3.Validate.isTrue;
 import static org.apache.commons.lang3.Validate.notBlank;
 import static org.apache.commons.lang3.Validate.notNull;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Striped;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermark;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermarkStore;
 import org.codice.ddf.catalog.ui.subscription.SubscriptionsPersistentStore;
 import org.codice.ddf.persistence.PersistenceException;
 import org.codice.ddf.persistence.PersistentItem;
@@ -38,9 +48,19 @@ import org.slf4j.LoggerFactory;
 
 /**
  * Associate sets of emails with an ID. This implementation will preserve any other properties
- * stored under the ID.
+ * stored under the ID. The {@link QueryWatermark} of a subscribed workspace is stored as a
+ * separate item under the same ID, so setting it never rewrites the subscription, and it is
+ * removed along with the subscription.
+ *
+ * <p>Emails are read from an in-memory index of all the subscriptions, in both directions, which
+ * is loaded from the {@link PersistentStore} on first use and updated by every change made through
+ * this class. The index is reloaded once it is older than the index refresh interval, so changes
+ * made by other nodes or written to the store directly are picked up. Changes to the same ID are
+ * serialized by a lock striped on the ID, so changes to different IDs do not wait on each other. If
+ * the index cannot be loaded, reads go to the {@link PersistentStore}.
  */
-public class SubscriptionsPersistentStoreImpl implements SubscriptionsPersistentStore {
+public class SubscriptionsPersistentStoreImpl
+    implements SubscriptionsPersistentStore, QueryWatermarkStore {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(SubscriptionsPersistentStore.class);
 
@@ -48,79 +68,199 @@ public class SubscriptionsPersistentStoreImpl implements SubscriptionsPersistent
 
   private static final String ID = "id";
 
+  private static final String WATERMARK_MODIFIED_PROPERTY = "watermarkModified";
+
+  private static final String WATERMARK_ID_PROPERTY = "watermarkId";
+
   private static final String SUBSCRIPTIONS_TYPE = PersistenceType.SUBSCRIPTION_TYPE.toString();
 
+  private static final String WATERMARKS_TYPE = "workspace_watermark";
+
   @VisibleForTesting static final int START_INDEX = 0;
 
   @VisibleForTesting static final int PAGE_SIZE = 1000;
 
-  private static final Lock LOCK = new ReentrantLock();
+  private static final int IDS_PER_QUERY = 100;
+
+  private static final long DEFAULT_INDEX_REFRESH_SECONDS = 60;
+
+  private static final Striped<Lock> LOCKS = Striped.lock(64);
 
   private final PersistentStore persistentStore;
 
+  /** Shared by changes to the index, exclusive while the index is loaded. */
+  private final ReadWriteLock indexLock = new ReentrantReadWriteLock();
+
+  private volatile Map<String, Set<String>> emailsById = new ConcurrentHashMap<>();
+
+  private volatile Map<String, Set<String>> idsByEmail = new ConcurrentHashMap<>();
+
+  private volatile boolean indexLoaded = false;
+
+  private volatile long indexLoadedNanos;
+
+  private volatile long indexRefreshNanos = TimeUnit.SECONDS.toNanos(DEFAULT_INDEX_REFRESH_SECONDS);
+
   /** @param persistentStore must be non-null */
   public SubscriptionsPersistentStoreImpl(PersistentStore persistentStore) {
     notNull(persistentStore, "persistentStore must be non-null");
     this.persistentStore = persistentStore;
   }
 
+  /**
+   * @param indexRefreshSeconds how old the in-memory index of the subscriptions may get before it
+   *     is reloaded from the {@link PersistentStore}, {@code 0} to reload it on every read (must be
+   *     non-null and non-negative)
+   */
+  public void setIndexRefreshSeconds(Long indexRefreshSeconds) {
+    notNull(indexRefreshSeconds, "indexRefreshSeconds must be non-null");
+    isTrue(indexRefreshSeconds >= 0, "indexRefreshSeconds must be non-negative");
+    LOGGER.debug("Setting indexRefreshSeconds : {}", indexRefreshSeconds);
+    this.indexRefreshNanos = TimeUnit.SECONDS.toNanos(indexRefreshSeconds);
+  }
+
   private List<Map<String, Object>> query(String query) throws PersistenceException {
-    LOCK.lock();
+    List<Map<String, Object>> results =
+        persistentStore.get(SUBSCRIPTIONS_TYPE, query, START_INDEX, PAGE_SIZE);
+    assert results.size() <= 1;
+    return results;
+  }
+
+  private List<Map<String, Object>> get(String id) throws PersistenceException {
+    return query(queryId(id));
+  }
+
+  private boolean isIndexFresh() {
+    return indexLoaded && System.nanoTime() - indexLoadedNanos < indexRefreshNanos;
+  }
+
+  /**
+   * Loads the index from the {@link PersistentStore} if it has not been loaded yet or is older than
+   * the refresh interval. The new index replaces the old one once it is complete, so reads made
+   * while it loads see the old one.
+   *
+   * @return true if the index can be used
+   */
+  private boolean loadIndex() {
+    if (isIndexFresh()) {
+      return true;
+    }
+
+    indexLock.writeLock().lock();
     try {
-      List<Map<String, Object>> results =
-          persistentStore.get(SUBSCRIPTIONS_TYPE, query, START_INDEX, PAGE_SIZE);
-      assert results.size() <= 1;
-      return results;
+      if (!isIndexFresh()) {
+        Map<String, Set<String>> newEmailsById = new ConcurrentHashMap<>();
+        Map<String, Set<String>> newIdsByEmail = new ConcurrentHashMap<>();
+        List<Map<String, Object>> results;
+        int startIndex = START_INDEX;
+        do {
+          results = persistentStore.get(SUBSCRIPTIONS_TYPE, "", startIndex, PAGE_SIZE);
+          results
+              .stream()
+              .map(PersistentItem::stripSuffixes)
+              .filter(result -> result.get(ID) != null)
+              .forEach(
+                  result ->
+                      index(
+                          newEmailsById,
+                          newIdsByEmail,
+                          result.get(ID).toString(),
+                          toStrings(result.get(EMAIL_PROPERTY))));
+          startIndex += PAGE_SIZE;
+        } while (results.size() == PAGE_SIZE);
+        emailsById = newEmailsById;
+        idsByEmail = newIdsByEmail;
+        indexLoadedNanos = System.nanoTime();
+        indexLoaded = true;
+        LOGGER.debug("Loaded {} subscriptions", newEmailsById.size());
+      }
+      return true;
+    } catch (PersistenceException e) {
+      LOGGER.warn("unable to load the subscriptions, reading them from the store instead", e);
+      indexLoaded = false;
+      emailsById = new ConcurrentHashMap<>();
+      idsByEmail = new ConcurrentHashMap<>();
+      return false;
     } finally {
-      LOCK.unlock();
+      indexLock.writeLock().unlock();
     }
   }
 
-  private List<Map<String, Object>> get(String id) throws PersistenceException {
-    return query(queryId(id));
+  /**
+   * Records the emails now associated with an ID. Must be called while holding the lock of the ID.
+   */
+  private void updateIndex(String id, Set<String> emails) {
+    if (indexLoaded) {
+      index(emailsById, idsByEmail, id, emails);
+    }
+  }
+
+  private static void index(
+      Map<String, Set<String>> emailsById,
+      Map<String, Set<String>> idsByEmail,
+      String id,
+      Set<String> emails) {
+    Set<String> previous =
+        emails.isEmpty()
+            ? emailsById.remove(id)
+            : emailsById.put(id, Collections.unmodifiableSet(new HashSet<>(emails)));
+
+    if (previous != null) {
+      previous
+          .stream()
+          .filter(email -> !emails.contains(email))
+          .forEach(
+              email ->
+                  idsByEmail.computeIfPresent(
+                      email,
+                      (key, ids) -> {
+                        ids.remove(id);
+                        return ids.isEmpty() ? null : ids;
+                      }));
+    }
+
+    emails.forEach(
+        email ->
+            idsByEmail.compute(
+                email,
+                (key, ids) -> {
+                  Set<String> newIds = ids != null ? ids : ConcurrentHashMap.newKeySet();
+                  newIds.add(id);
+                  return newIds;
+                }));
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public void addEmails(String id, Set<String> emails) {
     notBlank(id, "id must be non-blank");
     notNull(emails, "emails must be non-null");
     emails.forEach(email -> notBlank(email, "emails in set must be non-blank"));
 
-    LOCK.lock();
+    Lock lock = LOCKS.get(id);
+    lock.lock();
+    indexLock.readLock().lock();
     try {
       List<Map<String, Object>> results = get(id);
 
+      PersistentItem item;
       if (!results.isEmpty()) {
-        PersistentItem item = convert(results.get(0));
-
-        if (item.containsKey(EMAIL_PROPERTY + PersistentItem.TEXT_SUFFIX)) {
-          Set<String> newValue = new HashSet<>(emails);
-          Object value = item.get(EMAIL_PROPERTY + PersistentItem.TEXT_SUFFIX);
-          if (value instanceof String) {
-            newValue.add((String) value);
-          } else if (value instanceof Set) {
-            ((Set) value)
-                .stream()
-                .filter(String.class::isInstance)
-                .forEach(obj -> newValue.add((String) obj));
-          }
-          item.addProperty(EMAIL_PROPERTY, newValue);
-        } else {
-          item.addProperty(EMAIL_PROPERTY, emails);
-        }
-        persistentStore.add(SUBSCRIPTIONS_TYPE, item);
+        item = convert(results.get(0));
       } else {
-        PersistentItem persistentItem = new PersistentItem();
-        persistentItem.addIdProperty(id);
-        persistentItem.addProperty(EMAIL_PROPERTY, emails);
-        persistentStore.add(SUBSCRIPTIONS_TYPE, persistentItem);
+        item = new PersistentItem();
+        item.addIdProperty(id);
       }
 
+      Set<String> newValue = toStrings(item.get(EMAIL_PROPERTY + PersistentItem.TEXT_SUFFIX));
+      newValue.addAll(emails);
+      item.addProperty(EMAIL_PROPERTY, newValue);
+      persistentStore.add(SUBSCRIPTIONS_TYPE, item);
+
+      updateIndex(id, newValue);
     } catch (PersistenceException e) {
       LOGGER.warn("unable to add emails to workspace: workspaceId={} emails={}", id, emails, e);
     } finally {
-      LOCK.unlock();
+      indexLock.readLock().unlock();
+      lock.unlock();
     }
   }
 
@@ -165,81 +305,50 @@ public class SubscriptionsPersistentStoreImpl implements SubscriptionsPersistent
     return item;
   }
 
-  private void add(String id, PersistentItem item) {
-    LOCK.lock();
-    try {
-      persistentStore.add(SUBSCRIPTIONS_TYPE, item);
-    } catch (PersistenceException e) {
-      LOGGER.warn(
-          "unable to add PersistentItem to the PersistentStore: id={} item={}", id, item, e);
-
-    } finally {
-      LOCK.unlock();
-    }
-  }
-
   @Override
   public void removeEmails(String id, Set<String> emails) {
     notBlank(id, "id must be non-blank");
 
-    LOCK.lock();
+    Lock lock = LOCKS.get(id);
+    lock.lock();
+    indexLock.readLock().lock();
     try {
-      List<Map<String, Object>> results = get(id);
-
-      results
-          .stream()
-          .map(this::convert)
-          .map(item -> strip(item, emails))
-          .forEach(item -> add(id, item));
-
+      for (Map<String, Object> result : get(id)) {
+        PersistentItem item = strip(convert(result), emails);
+        persistentStore.add(SUBSCRIPTIONS_TYPE, item);
+        updateIndex(id, toStrings(item.get(EMAIL_PROPERTY + PersistentItem.TEXT_SUFFIX)));
+      }
     } catch (PersistenceException e) {
       LOGGER.warn("unable to delete emails from workspace: id={}", id, e);
     } finally {
-      LOCK.unlock();
+      indexLock.readLock().unlock();
+      lock.unlock();
     }
   }
 
-  private Set<String> merge(Set<String> set1, Set<String> set2) {
-    return Stream.of(set1, set2).flatMap(Collection::stream).collect(Collectors.toSet());
-  }
-
   private String quote(String value) {
     return "'" + value + "'";
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Set<String> getSubscriptions(String email) {
     notBlank(email, "email must be non-blank");
 
-    LOCK.lock();
-    try {
-
-      List<Map<String, Object>> results = query(queryEmail(email));
-
-      List<Object> mapValues =
-          results
-              .stream()
-              .map(PersistentItem::stripSuffixes)
-              .filter(result -> result.containsKey(ID))
-              .map(result -> result.get(ID))
-              .collect(Collectors.toList());
-
-      Set<String> emailsFromSet =
-          streamToStrings(
-              mapValues
-                  .stream()
-                  .filter(Set.class::isInstance)
-                  .map(Set.class::cast)
-                  .flatMap(Set::stream));
-
-      Set<String> emailsFromString = streamToStrings(mapValues.stream());
+    if (loadIndex()) {
+      return Optional.ofNullable(idsByEmail.get(email))
+          .<Set<String>>map(HashSet::new)
+          .orElse(Collections.emptySet());
+    }
 
-      return merge(emailsFromSet, emailsFromString);
+    try {
+      return query(queryEmail(email))
+          .stream()
+          .map(PersistentItem::stripSuffixes)
+          .map(result -> toStrings(result.get(ID)))
+          .flatMap(Set::stream)
+          .collect(Collectors.toSet());
     } catch (PersistenceException e) {
       LOGGER.warn("unable to get workspace ids: email={}", email, e);
-    } finally {
-      LOCK.unlock();
     }
 
     return Collections.emptySet();
@@ -249,52 +358,76 @@ public class SubscriptionsPersistentStoreImpl implements SubscriptionsPersistent
   public void removeSubscriptions(String id) {
     final String ecql = queryId(id);
 
-    LOCK.lock();
+    Lock lock = LOCKS.get(id);
+    lock.lock();
+    indexLock.readLock().lock();
     try {
       persistentStore.delete(SUBSCRIPTIONS_TYPE, ecql, START_INDEX, PAGE_SIZE);
+      updateIndex(id, Collections.emptySet());
+      persistentStore.delete(WATERMARKS_TYPE, ecql, START_INDEX, PAGE_SIZE);
     } catch (PersistenceException e) {
       LOGGER.debug("Could not delete subscriptions for query {}", ecql, e);
     } finally {
-      LOCK.unlock();
+      indexLock.readLock().unlock();
+      lock.unlock();
     }
   }
 
-  @SuppressWarnings("unchecked")
   @Override
   public Set<String> getEmails(String id) {
     notBlank(id, "id must be non-blank");
 
-    LOCK.lock();
-    try {
-
-      List<Map<String, Object>> results = get(id);
+    return getEmails(Collections.singleton(id)).getOrDefault(id, Collections.emptySet());
+  }
 
-      List<Object> mapValues =
-          results
-              .stream()
-              .map(PersistentItem::stripSuffixes)
-              .filter(result -> result.containsKey(EMAIL_PROPERTY))
-              .map(result -> result.get(EMAIL_PROPERTY))
-              .collect(Collectors.toList());
+  @Override
+  public Map<String, Set<String>> getEmails(Collection<String> ids) {
+    notNull(ids, "ids must be non-null");
+    ids.forEach(id -> notBlank(id, "ids in collection must be non-blank"));
+
+    Map<String, Set<String>> emails = new HashMap<>();
+
+    if (loadIndex()) {
+      ids.forEach(
+          id ->
+              Optional.ofNullable(emailsById.get(id))
+                  .ifPresent(idEmails -> emails.put(id, new HashSet<>(idEmails))));
+      return emails;
+    }
 
-      Set<String> emailsFromSet =
-          streamToStrings(
-              mapValues
-                  .stream()
-                  .filter(Set.class::isInstance)
-                  .map(Set.class::cast)
-                  .flatMap(Set::stream));
+    for (List<String> chunk : Iterables.partition(new HashSet<>(ids), IDS_PER_QUERY)) {
+      String ecql = chunk.stream().map(this::queryId).collect(Collectors.joining(" OR "));
+      try {
+        persistentStore
+            .get(SUBSCRIPTIONS_TYPE, ecql, START_INDEX, PAGE_SIZE)
+            .stream()
+            .map(PersistentItem::stripSuffixes)
+            .filter(result -> result.get(ID) != null)
+            .forEach(
+                result -> {
+                  Set<String> idEmails = toStrings(result.get(EMAIL_PROPERTY));
+                  if (!idEmails.isEmpty()) {
+                    emails.put(result.get(ID).toString(), idEmails);
+                  }
+                });
+      } catch (PersistenceException e) {
+        LOGGER.warn("unable to get workspace emails: ids={}", chunk, e);
+      }
+    }
 
-      Set<String> emailsFromString = streamToStrings(mapValues.stream());
+    return emails;
+  }
 
-      return merge(emailsFromSet, emailsFromString);
-    } catch (PersistenceException e) {
-      LOGGER.warn("unable to get workspace emails: id={}", id, e);
-    } finally {
-      LOCK.unlock();
+  /**
+   * Convert a property value, which is either a single string or a set of them, into a mutable set
+   * of strings.
+   */
+  @SuppressWarnings("unchecked")
+  private Set<String> toStrings(Object value) {
+    if (value instanceof Set) {
+      return streamToStrings(((Set<Object>) value).stream());
     }
-
-    return Collections.emptySet();
+    return streamToStrings(Stream.of(value));
   }
 
   /**
@@ -307,7 +440,64 @@ public class SubscriptionsPersistentStoreImpl implements SubscriptionsPersistent
     return stream
         .filter(String.class::isInstance)
         .map(String.class::cast)
-        .collect(Collectors.toSet());
+        .collect(Collectors.toCollection(HashSet::new));
+  }
+
+  @Override
+  public Map<String, QueryWatermark> getWatermarks(Set<String> workspaceIds) {
+    notNull(workspaceIds, "workspaceIds must be non-null");
+
+    Map<String, QueryWatermark> watermarks = new HashMap<>();
+    for (List<String> ids : Iterables.partition(workspaceIds, IDS_PER_QUERY)) {
+      String ecql = ids.stream().map(this::queryId).collect(Collectors.joining(" OR "));
+
+      try {
+        persistentStore
+            .get(WATERMARKS_TYPE, ecql, START_INDEX, PAGE_SIZE)
+            .stream()
+            .map(PersistentItem::stripSuffixes)
+            .forEach(
+                result ->
+                    toWatermark(result)
+                        .ifPresent(
+                            watermark -> watermarks.put(result.get(ID).toString(), watermark)));
+      } catch (PersistenceException e) {
+        LOGGER.warn("unable to get workspace watermarks: ids={}", ids, e);
+      }
+    }
+    return watermarks;
+  }
+
+  private Optional<QueryWatermark> toWatermark(Map<String, Object> result) {
+    Object id = result.get(ID);
+    Object modified = result.get(WATERMARK_MODIFIED_PROPERTY);
+    Object watermarkId = result.get(WATERMARK_ID_PROPERTY);
+    if (id == null || !(modified instanceof Date) || !(watermarkId instanceof String)) {
+      return Optional.empty();
+    }
+    return Optional.of(new QueryWatermark((Date) modified, (String) watermarkId));
+  }
+
+  @Override
+  public void setWatermark(String workspaceId, QueryWatermark watermark) {
+    notBlank(workspaceId, "workspaceId must be non-blank");
+    notNull(watermark, "watermark must be non-null");
+
+    if (getEmails(workspaceId).isEmpty()) {
+      LOGGER.debug("Not setting the watermark of unsubscribed workspace: id={}", workspaceId);
+      return;
+    }
+
+    PersistentItem item = new PersistentItem();
+    item.addIdProperty(workspaceId);
+    item.addProperty(WATERMARK_MODIFIED_PROPERTY, watermark.getModified());
+    item.addProperty(WATERMARK_ID_PROPERTY, watermark.getId());
+    try {
+      persistentStore.add(WATERMARKS_TYPE, item);
+    } catch (PersistenceException e) {
+      LOGGER.warn(
+          "unable to set workspace watermark: id={} watermark={}", workspaceId, watermark, e);
+    }
   }
 
   @Override
@@ -0,0 +1,230 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.apache.commons.lang3.Validate.notNull;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import org.codice.ddf.catalog.ui.query.monitor.email.EmailDeliveryMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Brings the {@link WorkspaceQueryMetrics} and {@link EmailDeliveryMetrics} together, registers
+ * them as an MXBean and renders them for the metrics endpoint.
+ */
+public class WorkspaceMonitorMetrics implements WorkspaceMonitorMetricsMXBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(WorkspaceMonitorMetrics.class);
+
+  private static final String OBJECT_NAME =
+      "org.codice.ddf.catalog.ui.query.monitor:type=WorkspaceMonitorMetrics";
+
+  private final WorkspaceQueryMetrics queryMetrics;
+
+  private final EmailDeliveryMetrics emailMetrics;
+
+  private final MBeanServer mBeanServer;
+
+  /**
+   * @param queryMetrics must be non-null
+   * @param emailMetrics must be non-null
+   */
+  public WorkspaceMonitorMetrics(
+      WorkspaceQueryMetrics queryMetrics, EmailDeliveryMetrics emailMetrics) {
+    this(queryMetrics, emailMetrics, ManagementFactory.getPlatformMBeanServer());
+  }
+
+  WorkspaceMonitorMetrics(
+      WorkspaceQueryMetrics queryMetrics,
+      EmailDeliveryMetrics emailMetrics,
+      MBeanServer mBeanServer) {
+    notNull(queryMetrics, "queryMetrics must be non-null");
+    notNull(emailMetrics, "emailMetrics must be non-null");
+    notNull(mBeanServer, "mBeanServer must be non-null");
+
+    this.queryMetrics = queryMetrics;
+    this.emailMetrics = emailMetrics;
+    this.mBeanServer = mBeanServer;
+  }
+
+  public void init() {
+    try {
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (!mBeanServer.isRegistered(objectName)) {
+        mBeanServer.registerMBean(this, objectName);
+      }
+    } catch (MalformedObjectNameException
+        | InstanceAlreadyExistsException
+        | MBeanRegistrationException
+        | NotCompliantMBeanException e) {
+      LOGGER.warn("Unable to register the workspace monitor metrics MBean", e);
+    }
+  }
+
+  public void destroy() {
+    try {
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+    } catch (MalformedObjectNameException
+        | InstanceNotFoundException
+        | MBeanRegistrationException e) {
+      LOGGER.debug("Unable to unregister the workspace monitor metrics MBean", e);
+    }
+  }
+
+  @Override
+  public long getRuns() {
+    return queryMetrics.getRuns();
+  }
+
+  @Override
+  public long getLastRunDurationMillis() {
+    return queryMetrics.getLastRunDurationMillis();
+  }
+
+  @Override
+  public int getLastRunWorkspaces() {
+    return queryMetrics.getLastRunWorkspaces();
+  }
+
+  @Override
+  public int getLastRunDistinctQueries() {
+    return queryMetrics.getLastRunDistinctQueries();
+  }
+
+  @Override
+  public long getLastRunHits() {
+    return queryMetrics.getLastRunHits();
+  }
+
+  @Override
+  public long getTotalHits() {
+    return queryMetrics.getTotalHits();
+  }
+
+  @Override
+  public int getQueryQueueDepth() {
+    return queryMetrics.getQueueDepth();
+  }
+
+  @Override
+  public long getQueryTimeouts() {
+    return queryMetrics.getTimeouts();
+  }
+
+  @Override
+  public Map<String, Long> getSourceQueryCounts() {
+    return mapSourceLatencies(LatencyHistogram::getCount);
+  }
+
+  @Override
+  public Map<String, Double> getSourceAverageLatencyMillis() {
+    return mapSourceLatencies(LatencyHistogram::getAverage);
+  }
+
+  @Override
+  public Map<String, Long> getSourceMaxLatencyMillis() {
+    return mapSourceLatencies(LatencyHistogram::getMax);
+  }
+
+  private <T> Map<String, T> mapSourceLatencies(Function<LatencyHistogram, T> mapper) {
+    Map<String, T> values = new TreeMap<>();
+    queryMetrics
+        .getSourceLatencies()
+        .forEach((source, latencies) -> values.put(source, mapper.apply(latencies)));
+    return values;
+  }
+
+  @Override
+  public int getEmailQueueDepth() {
+    return emailMetrics.getQueueDepth();
+  }
+
+  @Override
+  public long getEmailsQueued() {
+    return emailMetrics.getQueued();
+  }
+
+  @Override
+  public long getEmailsSent() {
+    return emailMetrics.getSent();
+  }
+
+  @Override
+  public long getEmailsRetried() {
+    return emailMetrics.getRetried();
+  }
+
+  @Override
+  public long getEmailsFailed() {
+    return emailMetrics.getFailed();
+  }
+
+  /** @return the metrics, with the full latency histogram of each source, for the endpoint */
+  public Map<String, Object> toMap() {
+    Map<String, Object> lastRun = new LinkedHashMap<>();
+    lastRun.put("durationMillis", getLastRunDurationMillis());
+    lastRun.put("workspaces", getLastRunWorkspaces());
+    lastRun.put("distinctQueries", getLastRunDistinctQueries());
+    lastRun.put("hits", getLastRunHits());
+
+    Map<String, Object> sources = new TreeMap<>();
+    queryMetrics
+        .getSourceLatencies()
+        .forEach(
+            (source, latencies) -> {
+              Map<String, Object> latency = new LinkedHashMap<>();
+              latency.put("count", latencies.getCount());
+              latency.put("minMillis", latencies.getMin());
+              latency.put("maxMillis", latencies.getMax());
+              latency.put("averageMillis", latencies.getAverage());
+              latency.put("buckets", latencies.getBuckets());
+              sources.put(source, latency);
+            });
+
+    Map<String, Object> queries = new LinkedHashMap<>();
+    queries.put("runs", getRuns());
+    queries.put("totalHits", getTotalHits());
+    queries.put("queueDepth", getQueryQueueDepth());
+    queries.put("timeouts", getQueryTimeouts());
+    queries.put("lastRun", lastRun);
+    queries.put("sourceLatencies", sources);
+
+    Map<String, Object> emails = new LinkedHashMap<>();
+    emails.put("queueDepth", getEmailQueueDepth());
+    emails.put("queued", getEmailsQueued());
+    emails.put("sent", getEmailsSent());
+    emails.put("retried", getEmailsRetried());
+    emails.put("failed", getEmailsFailed());
+
+    Map<String, Object> metrics = new LinkedHashMap<>();
+    metrics.put("queries", queries);
+    metrics.put("emails", emails);
+    return metrics;
+  }
+}
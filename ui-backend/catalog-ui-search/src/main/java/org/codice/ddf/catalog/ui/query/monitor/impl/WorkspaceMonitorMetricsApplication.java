@@ -0,0 +1,45 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static spark.Spark.get;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import spark.servlet.SparkApplication;
+
+/** Serves the {@link WorkspaceMonitorMetrics} as JSON. */
+public class WorkspaceMonitorMetricsApplication implements SparkApplication {
+
+  private static final Gson GSON =
+      new GsonBuilder().disableHtmlEscaping().serializeNulls().create();
+
+  private WorkspaceMonitorMetrics metrics;
+
+  @Override
+  public void init() {
+    get(
+        "/workspaces/monitor/metrics",
+        (req, res) -> {
+          res.type("application/json");
+          return metrics.toMap();
+        },
+        GSON::toJson);
+  }
+
+  @SuppressWarnings("WeakerAccess" /* setter must be public for blueprint access */)
+  public void setMetrics(WorkspaceMonitorMetrics metrics) {
+    this.metrics = metrics;
+  }
+}
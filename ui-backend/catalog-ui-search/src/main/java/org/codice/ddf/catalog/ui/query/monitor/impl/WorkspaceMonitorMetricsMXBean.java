@@ -0,0 +1,55 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import java.util.Map;
+
+/** The metrics of the workspace query monitor and of the emails it sends, as seen over JMX. */
+public interface WorkspaceMonitorMetricsMXBean {
+
+  long getRuns();
+
+  long getLastRunDurationMillis();
+
+  int getLastRunWorkspaces();
+
+  int getLastRunDistinctQueries();
+
+  long getLastRunHits();
+
+  long getTotalHits();
+
+  int getQueryQueueDepth();
+
+  long getQueryTimeouts();
+
+  /** @return the number of queries run against each source */
+  Map<String, Long> getSourceQueryCounts();
+
+  /** @return the average query latency of each source, in milliseconds */
+  Map<String, Double> getSourceAverageLatencyMillis();
+
+  /** @return the longest query latency of each source, in milliseconds */
+  Map<String, Long> getSourceMaxLatencyMillis();
+
+  int getEmailQueueDepth();
+
+  long getEmailsQueued();
+
+  long getEmailsSent();
+
+  long getEmailsRetried();
+
+  long getEmailsFailed();
+}
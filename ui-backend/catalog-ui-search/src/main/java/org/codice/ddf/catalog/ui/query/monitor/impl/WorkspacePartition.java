@@ -0,0 +1,77 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.apache.commons.lang3.Validate.isTrue;
+import static org.apache.commons.lang3.Validate.notNull;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One of {@code count} equal ranges of the hash space of workspace ids. When every node of a
+ * cluster monitors a different partition, each workspace is monitored by exactly one node. The
+ * hash of an id does not depend on the JVM, so every node agrees on the partition of a workspace.
+ */
+public final class WorkspacePartition {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+  private final int count;
+
+  private final int index;
+
+  /**
+   * @param count the number of partitions (must be positive)
+   * @param index the partition, from {@code 0} to {@code count - 1}
+   */
+  public WorkspacePartition(int count, int index) {
+    isTrue(count > 0, "count must be positive: %d", count);
+    isTrue(index >= 0 && index < count, "index must be from 0 to %d: %d", count - 1, index);
+    this.count = count;
+    this.index = index;
+  }
+
+  public int getCount() {
+    return count;
+  }
+
+  public int getIndex() {
+    return index;
+  }
+
+  /** @return true if this is the only partition */
+  public boolean isWhole() {
+    return count == 1;
+  }
+
+  /**
+   * @param workspaceId must be non-null
+   * @return true if the workspace belongs to this partition
+   */
+  public boolean owns(String workspaceId) {
+    notNull(workspaceId, "workspaceId must be non-null");
+    if (isWhole()) {
+      return true;
+    }
+    long hash = HASH_FUNCTION.hashString(workspaceId, StandardCharsets.UTF_8).asInt() & 0xFFFFFFFFL;
+    return (hash * count) >>> 32 == index;
+  }
+
+  @Override
+  public String toString() {
+    return "WorkspacePartition{" + "count=" + count + ", index=" + index + '}';
+  }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+
+/**
+ * Measures the runs of the workspace query monitor and the load they put on its executor and on
+ * each source.
+ */
+public class WorkspaceQueryMetrics {
+
+  private final IntSupplier queueDepth;
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  private final AtomicLong runs = new AtomicLong();
+
+  private final AtomicLong totalHits = new AtomicLong();
+
+  private final Map<String, LatencyHistogram> sourceLatencies = new ConcurrentHashMap<>();
+
+  private volatile RunSummary lastRun = new RunSummary(0, 0, 0, 0);
+
+  /** @param queueDepth supplies the number of queries waiting to run */
+  public WorkspaceQueryMetrics(IntSupplier queueDepth) {
+    this.queueDepth = queueDepth;
+  }
+
+  void recordQuery(String source, long latencyMillis) {
+    sourceLatencies.computeIfAbsent(source, key -> new LatencyHistogram()).record(latencyMillis);
+  }
+
+  void recordRun(long durationMillis, int workspaces, int distinctQueries, long hits) {
+    lastRun = new RunSummary(durationMillis, workspaces, distinctQueries, hits);
+    runs.incrementAndGet();
+    totalHits.addAndGet(hits);
+  }
+
+  void recordTimeout() {
+    timeouts.incrementAndGet();
+  }
+
+  /** @return the number of queries waiting for an executor thread */
+  public int getQueueDepth() {
+    return queueDepth.getAsInt();
+  }
+
+  /** @return the number of queries that did not complete before the deadline of their run */
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  /** @return a copy of the query latencies of each source */
+  public Map<String, LatencyHistogram> getSourceLatencies() {
+    Map<String, LatencyHistogram> copy = new TreeMap<>();
+    sourceLatencies.forEach((source, latencies) -> copy.put(source, latencies.copy()));
+    return Collections.unmodifiableMap(copy);
+  }
+
+  /** @return the number of completed runs */
+  public long getRuns() {
+    return runs.get();
+  }
+
+  /** @return the sum of the hit counts reported by all runs */
+  public long getTotalHits() {
+    return totalHits.get();
+  }
+
+  /** @return the number of milliseconds the last run took */
+  public long getLastRunDurationMillis() {
+    return lastRun.durationMillis;
+  }
+
+  /** @return the number of workspaces monitored by the last run */
+  public int getLastRunWorkspaces() {
+    return lastRun.workspaces;
+  }
+
+  /** @return the number of distinct queries run by the last run */
+  public int getLastRunDistinctQueries() {
+    return lastRun.distinctQueries;
+  }
+
+  /** @return the sum of the hit counts reported by the last run */
+  public long getLastRunHits() {
+    return lastRun.hits;
+  }
+
+  @Override
+  public String toString() {
+    RunSummary run = lastRun;
+    return "WorkspaceQueryMetrics{"
+        + "runs="
+        + getRuns()
+        + ", lastRunDurationMillis="
+        + run.durationMillis
+        + ", lastRunWorkspaces="
+        + run.workspaces
+        + ", lastRunDistinctQueries="
+        + run.distinctQueries
+        + ", lastRunHits="
+        + run.hits
+        + ", queueDepth="
+        + getQueueDepth()
+        + ", timeouts="
+        + getTimeouts()
+        + ", sourceLatencies="
+        + getSourceLatencies()
+        + '}';
+  }
+
+  /** The values of one run, replaced as a whole so that they are always read together. */
+  private static class RunSummary {
+    private final long durationMillis;
+
+    private final int workspaces;
+
+    private final int distinctQueries;
+
+    private final long hits;
+
+    private RunSummary(long durationMillis, int workspaces, int distinctQueries, long hits) {
+      this.durationMillis = durationMillis;
+      this.workspaces = workspaces;
+      this.distinctQueries = distinctQueries;
+      this.hits = hits;
+    }
+  }
+}
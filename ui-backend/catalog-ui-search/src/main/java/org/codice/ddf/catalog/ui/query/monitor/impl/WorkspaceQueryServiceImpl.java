@@ -13,16 +13,24 @@
  */
 package org.codice.ddf.catalog.ui.query.monitor.impl;
 
-import static org.apache.commons.lang3.Validate.notEmpty;
 import static org.apache.commons.lang3.Validate.notNull;
 import static org.quartz.CronScheduleBuilder.cronSchedule;
 import static org.quartz.JobBuilder.newJob;
 import static org.quartz.TriggerBuilder.newTrigger;
 
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.Constants;
+import ddf.catalog.data.Attribute;
+import ddf.catalog.data.Metacard;
+import ddf.catalog.data.Result;
+import ddf.catalog.data.types.Core;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.filter.impl.SortByImpl;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.impl.QueryImpl;
@@ -31,39 +39,55 @@ import ddf.catalog.source.SourceUnavailableException;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.Subject;
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ForkJoinTask;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.BiFunction;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
+import javax.annotation.Nullable;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 import org.codice.ddf.catalog.ui.metacard.query.data.metacard.QueryMetacardImpl;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
 import org.codice.ddf.catalog.ui.query.monitor.api.FilterService;
 import org.codice.ddf.catalog.ui.query.monitor.api.QueryUpdateSubscriber;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermark;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermarkStore;
 import org.codice.ddf.catalog.ui.query.monitor.api.SecurityService;
 import org.codice.ddf.catalog.ui.query.monitor.api.WorkspaceQueryService;
 import org.codice.ddf.catalog.ui.query.monitor.api.WorkspaceService;
-import org.codice.ddf.platform.util.ForkJoinPoolFactory;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.geotools.filter.text.cql2.CQLException;
 import org.geotools.filter.text.ecql.ECQL;
 import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.sort.SortBy;
+import org.opengis.filter.sort.SortOrder;
 import org.quartz.CronTrigger;
 import org.quartz.JobDetail;
 import org.quartz.Scheduler;
@@ -81,6 +105,29 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
 
   private static final String TRIGGER_NAME = "WorkspaceQueryTrigger";
 
+  private static final int DEFAULT_QUERY_THREADS = 8;
+
+  private static final int DEFAULT_QUERIES_PER_SOURCE = 2;
+
+  private static final String EXCLUDE_ATTRIBUTES = "excludeAttributes";
+
+  /**
+   * Only the id and modified date of a single metacard are read from a monitor query response, so
+   * the large attributes are left out of it.
+   */
+  private static final ImmutableSet<String> EXCLUDED_ATTRIBUTES =
+      ImmutableSet.of(Metacard.METADATA, Core.THUMBNAIL, "lux");
+
+  private static final ImmutableList<SortBy> ADDITIONAL_SORTS =
+      ImmutableList.of(new SortByImpl(Core.ID, SortOrder.DESCENDING));
+
+  /**
+   * The properties shared by every monitor query. Each query request gets its own copy, since the
+   * system subject is added to it, but the values themselves are immutable and shared.
+   */
+  private static final ImmutableMap<String, Serializable> QUERY_PROPERTIES =
+      ImmutableMap.of(EXCLUDE_ATTRIBUTES, EXCLUDED_ATTRIBUTES);
+
   private final QueryUpdateSubscriber queryUpdateSubscriber;
 
   private final WorkspaceService workspaceService;
@@ -96,6 +143,8 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
 
   private FilterService filterService;
 
+  private QueryWatermarkStore watermarkStore;
+
   private long queryTimeoutMinutes;
 
   private Integer queryTimeInterval;
@@ -104,6 +153,29 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
 
   private Subject subject;
 
+  private volatile int partitionCount = 1;
+
+  private volatile int partitionIndex = 0;
+
+  private volatile String leaseDirectory = "";
+
+  private final ThreadPoolExecutor queryExecutor =
+      new ThreadPoolExecutor(
+          DEFAULT_QUERY_THREADS,
+          DEFAULT_QUERY_THREADS,
+          60L,
+          TimeUnit.SECONDS,
+          new LinkedBlockingQueue<>(),
+          StandardThreadFactoryBuilder.newThreadFactory("workspaceQueryMonitorThread"));
+
+  private volatile int queriesPerSource = DEFAULT_QUERIES_PER_SOURCE;
+
+  /** The number of queries held back until another query against the same source completes. */
+  private final AtomicInteger heldQueries = new AtomicInteger();
+
+  private final WorkspaceQueryMetrics metrics =
+      new WorkspaceQueryMetrics(() -> queryExecutor.getQueue().size() + heldQueries.get());
+
   /**
    * @param queryUpdateSubscriber must be non-null
    * @param workspaceService must be non-null
@@ -137,6 +209,7 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     this.filterBuilder = filterBuilder;
     this.securityService = securityService;
     this.filterService = filterService;
+    this.queryExecutor.allowCoreThreadTimeOut(true);
 
     Optional<Scheduler> schedulerOptional = schedulerSupplier.get();
 
@@ -187,7 +260,45 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     }
   }
 
-  /** @param queryTimeoutMinutes minutes (must be non-null) */
+  /**
+   * @param queryThreads the number of monitor queries that may run at the same time (must be
+   *     non-null)
+   */
+  @SuppressWarnings("unused")
+  public void setQueryThreads(Integer queryThreads) {
+    notNull(queryThreads, "queryThreads must be non-null");
+    int threads = Math.max(1, queryThreads);
+    LOGGER.debug("Setting queryThreads : {}", threads);
+    synchronized (queryExecutor) {
+      if (threads > queryExecutor.getMaximumPoolSize()) {
+        queryExecutor.setMaximumPoolSize(threads);
+        queryExecutor.setCorePoolSize(threads);
+      } else if (threads < queryExecutor.getMaximumPoolSize()) {
+        queryExecutor.setCorePoolSize(threads);
+        queryExecutor.setMaximumPoolSize(threads);
+      }
+    }
+  }
+
+  /**
+   * @param queriesPerSource the number of monitor queries that may run against a single source at
+   *     the same time (must be non-null)
+   */
+  @SuppressWarnings("unused")
+  public void setQueriesPerSource(Integer queriesPerSource) {
+    notNull(queriesPerSource, "queriesPerSource must be non-null");
+    LOGGER.debug("Setting queriesPerSource : {}", queriesPerSource);
+    this.queriesPerSource = Math.max(1, queriesPerSource);
+  }
+
+  public WorkspaceQueryMetrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * @param queryTimeoutMinutes minutes allowed for all the queries of a run to complete (must be
+   *     non-null)
+   */
   @SuppressWarnings("unused")
   public void setQueryTimeoutMinutes(Long queryTimeoutMinutes) {
     notNull(queryTimeoutMinutes, "queryTimeoutMinutes must be non-null");
@@ -195,12 +306,53 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     this.queryTimeoutMinutes = queryTimeoutMinutes;
   }
 
+  /**
+   * When set, each run only counts the changes made since the watermark stored for a workspace by
+   * the previous run. Workspaces without a watermark fall back to the query time interval.
+   */
+  public void setWatermarkStore(QueryWatermarkStore watermarkStore) {
+    this.watermarkStore = watermarkStore;
+  }
+
+  /**
+   * @param partitionCount the number of nodes that share the workspaces to monitor (must be
+   *     non-null)
+   */
+  @SuppressWarnings("unused")
+  public void setPartitionCount(Integer partitionCount) {
+    notNull(partitionCount, "partitionCount must be non-null");
+    LOGGER.debug("Setting partitionCount : {}", partitionCount);
+    this.partitionCount = partitionCount;
+  }
+
+  /**
+   * @param partitionIndex the share of the workspaces monitored by this node, from {@code 0} to
+   *     {@code partitionCount - 1} (must be non-null)
+   */
+  @SuppressWarnings("unused")
+  public void setPartitionIndex(Integer partitionIndex) {
+    notNull(partitionIndex, "partitionIndex must be non-null");
+    LOGGER.debug("Setting partitionIndex : {}", partitionIndex);
+    this.partitionIndex = partitionIndex;
+  }
+
+  /**
+   * @param leaseDirectory a directory shared by the nodes of a cluster, where a node leases its
+   *     partition for the length of a run, or blank to run without a lease
+   */
+  @SuppressWarnings("unused")
+  public void setLeaseDirectory(String leaseDirectory) {
+    LOGGER.debug("Setting leaseDirectory : {}", leaseDirectory);
+    this.leaseDirectory = StringUtils.trimToEmpty(leaseDirectory);
+  }
+
   public void setSubject(Subject subject) {
     this.subject = subject;
   }
 
   public void destroy() {
     LOGGER.trace("Shutting down");
+    queryExecutor.shutdownNow();
     try {
       scheduler.shutdown();
     } catch (SchedulerException e) {
@@ -208,81 +360,222 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     }
   }
 
-  /** Main entry point, should be called by a scheduler. */
+  /**
+   * Main entry point, should be called by a scheduler. Only the workspaces in this node's partition
+   * are monitored. When a lease directory is set, the run is skipped if another node holds the
+   * lease on the partition.
+   */
   public void run() {
-    securityService
-        .getSystemSubject()
-        .execute(
-            () -> {
-              LOGGER.trace("running workspace query service");
+    final WorkspacePartition partition;
+    try {
+      partition = new WorkspacePartition(partitionCount, partitionIndex);
+    } catch (IllegalArgumentException e) {
+      LOGGER.warn("Unable to monitor workspaces, the partition is not valid: {}", e.getMessage());
+      return;
+    }
+
+    Optional<FilePartitionLease> lease = Optional.empty();
+    if (!leaseDirectory.isEmpty()) {
+      lease = FilePartitionLease.tryAcquire(Paths.get(leaseDirectory), partition);
+      if (!lease.isPresent()) {
+        LOGGER.info("Skipping this run, the lease on {} is held elsewhere", partition);
+        return;
+      }
+    }
+
+    try {
+      securityService.getSystemSubject().execute(() -> run(partition));
+    } finally {
+      lease.ifPresent(FilePartitionLease::close);
+    }
+  }
 
-              Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
-                  workspaceService.getQueryMetacards();
+  private void run(WorkspacePartition partition) {
+    LOGGER.trace("running workspace query service: partition={}", partition);
 
-              LOGGER.debug("queryMetacards: size={}", queryMetacards.size());
+    long start = System.nanoTime();
 
-              List<WorkspaceTask> workspaceTasks = createWorkspaceTasks(queryMetacards);
+    Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
+        workspaceService.getQueryMetacards(partition::owns);
 
-              LOGGER.debug("workspaceTasks: size={}", workspaceTasks.size());
+    LOGGER.debug("queryMetacards: size={}", queryMetacards.size());
 
-              Map<String, Pair<WorkspaceMetacardImpl, Long>> results =
-                  executeWorkspaceTasks(workspaceTasks, queryTimeoutMinutes, TimeUnit.MINUTES);
+    Map<String, QueryWatermark> watermarks = getWatermarks(queryMetacards.keySet());
 
-              LOGGER.debug("results: {}", results);
+    QueryPlan queryPlan = createQueryPlan(queryMetacards, watermarks);
 
-              queryUpdateSubscriber.notify(results);
-            });
+    LOGGER.debug(
+        "queryPlan: queries={} workspaces={}",
+        queryPlan.queryRequests.size(),
+        queryPlan.workspaceQueries.size());
+
+    Map<String, Hits> queryHits = executeQueries(queryPlan, queryTimeoutMinutes, TimeUnit.MINUTES);
+
+    List<WorkspaceHits> results = queryPlan.getWorkspaceHits(queryHits);
+
+    LOGGER.debug("results: {}", results);
+
+    queryUpdateSubscriber.notify(toHitCounts(results));
+
+    updateWatermarks(results, watermarks);
+
+    metrics.recordRun(
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+        queryMetacards.size(),
+        queryPlan.queryRequests.size(),
+        results.stream().mapToLong(result -> result.hitCount).sum());
+    LOGGER.debug("metrics: {}", metrics);
+  }
+
+  private Map<String, QueryWatermark> getWatermarks(Set<String> workspaceIds) {
+    if (watermarkStore == null || workspaceIds.isEmpty()) {
+      return Collections.emptyMap();
+    }
+    return watermarkStore.getWatermarks(workspaceIds);
   }
 
-  private Map<String, Pair<WorkspaceMetacardImpl, Long>> executeWorkspaceTasks(
-      List<WorkspaceTask> workspaceTasks, long timeout, TimeUnit timeoutUnit) {
-    Map<String, Pair<WorkspaceMetacardImpl, Long>> results = new ConcurrentHashMap<>();
+  /**
+   * Moves the watermark of each workspace forward to the newest change found by this run. The
+   * watermark is left alone when any query of the workspace failed or timed out, so that those
+   * changes are counted by the next run instead of being skipped.
+   */
+  private void updateWatermarks(
+      List<WorkspaceHits> results, Map<String, QueryWatermark> watermarks) {
+    if (watermarkStore == null) {
+      return;
+    }
 
-    workspaceTasks
-        .stream()
-        .map(ForkJoinPoolFactory.getNewForkJoinPool(null, false)::submit)
-        .map(task -> getTaskResult(task, timeout, timeoutUnit))
-        .filter(Objects::nonNull)
-        .forEach(
-            pair ->
-                results.put(
-                    pair.getLeft().getId(), new ImmutablePair<>(pair.getLeft(), pair.getRight())));
+    for (WorkspaceHits result : results) {
+      String workspaceId = result.workspaceMetacard.getId();
+      QueryWatermark previous = watermarks.get(workspaceId);
+      if (result.complete
+          && result.newest != null
+          && (previous == null || result.newest.compareTo(previous) > 0)) {
+        watermarkStore.setWatermark(workspaceId, result.newest);
+      }
+    }
+  }
 
-    return results;
+  private Map<String, Pair<WorkspaceMetacardImpl, Long>> toHitCounts(List<WorkspaceHits> results) {
+    Map<String, Pair<WorkspaceMetacardImpl, Long>> hitCounts = new ConcurrentHashMap<>();
+    for (WorkspaceHits result : results) {
+      hitCounts.put(
+          result.workspaceMetacard.getId(),
+          new ImmutablePair<>(result.workspaceMetacard, result.hitCount));
+    }
+    return hitCounts;
   }
 
-  private Pair<WorkspaceMetacardImpl, Long> getTaskResult(
-      ForkJoinTask<Pair<WorkspaceMetacardImpl, Long>> workspaceTask,
-      long timeout,
-      TimeUnit timeoutUnit) {
-    try {
-      return workspaceTask.get(timeout, timeoutUnit);
-    } catch (TimeoutException e) {
-      LOGGER.warn("Timeout", e);
-    } catch (ExecutionException | InterruptedException e) {
-      LOGGER.warn("ForkJoinPool error", e);
+  /**
+   * Runs the distinct queries of a run on the query executor, with at most {@code
+   * queriesPerSource} queries against any one source submitted at a time. The rest wait in a queue
+   * per source and are submitted as the earlier ones complete, so the executor threads are never
+   * held waiting on a slow source. Queries that have not completed when {@code timeout} runs out
+   * are cancelled and left out of the results.
+   */
+  private Map<String, Hits> executeQueries(
+      QueryPlan queryPlan, long timeout, TimeUnit timeoutUnit) {
+    List<String> keys = new ArrayList<>(queryPlan.queryRequests.keySet());
+    Map<String, SourceQueue> sourceQueues = new LinkedHashMap<>();
+    List<QueryTask> queryTasks = new ArrayList<>();
+    for (String key : keys) {
+      SourceQueue sourceQueue =
+          sourceQueues.computeIfAbsent(queryPlan.querySources.get(key), SourceQueue::new);
+      QueryTask queryTask = new QueryTask(sourceQueue, queryPlan.queryRequests.get(key));
+      sourceQueue.add(queryTask);
+      queryTasks.add(queryTask);
+    }
 
+    long deadline = System.nanoTime() + timeoutUnit.toNanos(timeout);
+    Map<String, Hits> queryHits = new HashMap<>();
+    try {
+      sourceQueues.values().forEach(SourceQueue::start);
+      for (int i = 0; i < queryTasks.size(); i++) {
+        try {
+          queryHits.put(
+              keys.get(i),
+              queryTasks.get(i).get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+        } catch (TimeoutException | CancellationException e) {
+          LOGGER.warn(
+              "Query against source {} did not complete within {} {}",
+              queryTasks.get(i).sourceQueue.source,
+              timeout,
+              timeoutUnit);
+          metrics.recordTimeout();
+        } catch (ExecutionException e) {
+          LOGGER.warn("Query error", e.getCause());
+        }
+      }
+    } catch (InterruptedException e) {
+      LOGGER.warn("Interrupted while running workspace queries", e);
       Thread.currentThread().interrupt();
+    } finally {
+      sourceQueues.values().forEach(SourceQueue::cancel);
+      queryTasks.forEach(queryTask -> queryTask.cancel(true));
     }
-    return null;
+    return queryHits;
   }
 
-  private List<WorkspaceTask> createWorkspaceTasks(
-      Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards) {
-    List<WorkspaceTask> workspaceTasks = new ArrayList<>();
+  /**
+   * Plans the queries of a run. Each workspace gets one query per source, matching any of its
+   * queries for that source and changed since its watermark. Workspaces often share the same saved
+   * queries, so the query CQL is normalized and sorted, and a query that several workspaces share
+   * is only run once.
+   *
+   * <p>Queries are shared by their whole set of filters rather than filter by filter. A workspace's
+   * hit count is the number of metacards matching any of its queries, and a metacard that matches
+   * several of them is counted once. Counts of the individual filters cannot be added back up to
+   * that number, so running each distinct filter once and fanning its count out to every workspace
+   * would count those metacards more than once.
+   */
+  private QueryPlan createQueryPlan(
+      Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards,
+      Map<String, QueryWatermark> watermarks) {
+    QueryPlan queryPlan = new QueryPlan();
+    Map<String, String> normalizedCql = new HashMap<>();
+    Map<String, Filter> filters = new HashMap<>();
+    final Filter defaultModifiedFilter =
+        filterService.getModifiedDateFilter(calculateQueryTimeInterval());
 
     for (Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>> workspaceQueryPair :
         queryMetacards.values()) {
-      Map<String, List<QueryMetacardImpl>> queryMetacardsGroupedBySource =
-          groupBySource(workspaceQueryPair.getRight());
-      List<QueryRequest> queryRequests =
-          getQueryRequests(queryMetacardsGroupedBySource.values().stream());
-      if (!queryRequests.isEmpty()) {
-        workspaceTasks.add(new WorkspaceTask(workspaceQueryPair.getLeft(), queryRequests));
+      QueryWatermark watermark = watermarks.get(workspaceQueryPair.getLeft().getId());
+      List<String> queryKeys = new ArrayList<>();
+
+      for (Map.Entry<String, List<QueryMetacardImpl>> sourceQueries :
+          groupBySource(workspaceQueryPair.getRight()).entrySet()) {
+        SortedSet<String> cqls = new TreeSet<>();
+        for (QueryMetacardImpl queryMetacard : sourceQueries.getValue()) {
+          String cql =
+              normalizedCql.computeIfAbsent(
+                  queryMetacard.getCql(), rawCql -> normalizeCql(rawCql, filters));
+          if (cql != null) {
+            cqls.add(cql);
+          }
+        }
+        if (cqls.isEmpty()) {
+          continue;
+        }
+
+        String queryKey =
+            sourceQueries.getKey() + '\n' + watermark + '\n' + String.join("\n", cqls);
+        if (!queryPlan.queryRequests.containsKey(queryKey)) {
+          Filter modifiedFilter =
+              watermark == null
+                  ? defaultModifiedFilter
+                  : filterService.getModifiedAfterFilter(watermark);
+          queryPlan.queryRequests.put(queryKey, getQueryRequest(cqls, filters, modifiedFilter));
+          queryPlan.querySources.put(queryKey, sourceQueries.getKey());
+        }
+        queryKeys.add(queryKey);
+      }
+
+      if (!queryKeys.isEmpty()) {
+        queryPlan.workspaceQueries.add(Pair.of(workspaceQueryPair.getLeft(), queryKeys));
       }
     }
 
-    return workspaceTasks;
+    return queryPlan;
   }
 
   private Map<String, List<QueryMetacardImpl>> groupBySource(
@@ -311,40 +604,45 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     };
   }
 
-  private List<QueryRequest> getQueryRequests(
-      Stream<List<QueryMetacardImpl>> queriesGroupedBySource) {
-    final Filter modifiedFilter = filterService.getModifiedDateFilter(calculateQueryTimeInterval());
-    return queriesGroupedBySource
-        .map(this::queryMetacardsToFilters)
-        .map(filterBuilder::anyOf)
-        .map(filter -> filterBuilder.allOf(modifiedFilter, filter))
-        .map(this::filterToQuery)
-        .map(this::queryToQueryRequest)
-        .collect(Collectors.toList());
-  }
-
-  private List<Filter> queryMetacardsToFilters(List<QueryMetacardImpl> queriesForSource) {
-    return queriesForSource
-        .stream()
-        .map(this::metacardToFilter)
-        .filter(Objects::nonNull)
-        .collect(Collectors.toList());
+  private QueryRequest getQueryRequest(
+      Collection<String> cqls, Map<String, Filter> filters, Filter modifiedFilter) {
+    List<Filter> queryFilters = cqls.stream().map(filters::get).collect(Collectors.toList());
+    And filter = filterBuilder.allOf(modifiedFilter, filterBuilder.anyOf(queryFilters));
+    return queryToQueryRequest(filterToQuery(filter));
   }
 
   private QueryRequestImpl queryToQueryRequest(QueryImpl query) {
-    final Map<String, Serializable> properties = securityService.addSystemSubject(new HashMap<>());
-    return new QueryRequestImpl(query, properties);
+    final Map<String, Serializable> properties = new HashMap<>(QUERY_PROPERTIES);
+    // sources only accept an array, which cannot be shared safely
+    properties.put(Constants.ADDITIONAL_SORT_BYS, ADDITIONAL_SORTS.toArray(new SortBy[0]));
+    return new QueryRequestImpl(query, securityService.addSystemSubject(properties));
   }
 
+  /**
+   * Only the newest matching metacard is requested, to find the new watermark, along with the total
+   * number of matches. The monitor only needs the count otherwise, so no more than one result is
+   * ever read.
+   */
   private QueryImpl filterToQuery(And filter) {
     final QueryImpl query = new QueryImpl(filter);
     query.setRequestsTotalResultsCount(true);
+    query.setPageSize(1);
+    query.setSortBy(new SortByImpl(Core.MODIFIED, SortOrder.DESCENDING));
     return query;
   }
 
-  private Filter metacardToFilter(QueryMetacardImpl queryMetacard) {
+  /**
+   * @param filters the parsed filter of each normalized CQL string, added to if {@code cql} has
+   *     not been seen before
+   * @return the CQL in a canonical form, or null if it cannot be parsed
+   */
+  @Nullable
+  private String normalizeCql(String cql, Map<String, Filter> filters) {
     try {
-      return ECQL.toFilter(queryMetacard.getCql());
+      Filter filter = ECQL.toFilter(cql);
+      String normalized = ECQL.toCQL(filter);
+      filters.putIfAbsent(normalized, filter);
+      return normalized;
     } catch (CQLException e) {
       LOGGER.warn("Error parsing CQL", e);
       return null;
@@ -355,50 +653,167 @@ public class WorkspaceQueryServiceImpl implements WorkspaceQueryService {
     return Date.from(Instant.now().minus(queryTimeInterval, ChronoUnit.MINUTES));
   }
 
-  private class QueryTask extends RecursiveTask<Long> {
-    private final QueryRequest queryRequest;
+  @Nullable
+  private static QueryWatermark getWatermark(QueryResponse response) {
+    List<Result> results = response.getResults();
+    if (results == null || results.isEmpty() || results.get(0).getMetacard() == null) {
+      return null;
+    }
 
-    private QueryTask(QueryRequest queryRequest) {
-      this.queryRequest = queryRequest;
+    Metacard metacard = results.get(0).getMetacard();
+    Attribute modified = metacard.getAttribute(Core.MODIFIED);
+    if (modified == null || !(modified.getValue() instanceof Date) || metacard.getId() == null) {
+      return null;
     }
+    return new QueryWatermark((Date) modified.getValue(), metacard.getId());
+  }
 
-    @Override
-    protected Long compute() {
-      try {
-        final QueryResponse response = catalogFramework.query(queryRequest);
-        return response.getHits();
-      } catch (UnsupportedQueryException | FederationException | SourceUnavailableException e) {
-        LOGGER.warn("Query error", e);
-        return 0L;
-      }
+  @Nullable
+  private static QueryWatermark newest(
+      @Nullable QueryWatermark watermark, @Nullable QueryWatermark other) {
+    if (watermark == null) {
+      return other;
     }
+    return other == null || watermark.compareTo(other) >= 0 ? watermark : other;
   }
 
-  private class WorkspaceTask extends RecursiveTask<Pair<WorkspaceMetacardImpl, Long>> {
-    private final WorkspaceMetacardImpl workspaceMetacard;
+  /** The hit count of a query, or of all the queries of a workspace. */
+  private static class Hits {
+    final long hitCount;
+
+    @Nullable final QueryWatermark newest;
 
-    private final List<QueryRequest> queryRequests;
+    final boolean complete;
+
+    private Hits(long hitCount, @Nullable QueryWatermark newest, boolean complete) {
+      this.hitCount = hitCount;
+      this.newest = newest;
+      this.complete = complete;
+    }
 
-    private WorkspaceTask(
-        WorkspaceMetacardImpl workspaceMetacard, List<QueryRequest> queryRequests) {
-      notNull(workspaceMetacard, "WorkspaceMetacardImpl must be non-null");
-      notNull(queryRequests, "queryRequests must be non-null");
-      notEmpty(queryRequests, "queryRequests must be non-empty");
+    private Hits add(Hits other) {
+      return new Hits(
+          hitCount + other.hitCount, newest(newest, other.newest), complete && other.complete);
+    }
+  }
+
+  private static class WorkspaceHits extends Hits {
+    private final WorkspaceMetacardImpl workspaceMetacard;
+
+    private WorkspaceHits(WorkspaceMetacardImpl workspaceMetacard, Hits hits) {
+      super(hits.hitCount, hits.newest, hits.complete);
       this.workspaceMetacard = workspaceMetacard;
-      this.queryRequests = queryRequests;
     }
 
     @Override
-    protected Pair<WorkspaceMetacardImpl, Long> compute() {
-      final long result =
-          queryRequests
-              .stream()
-              .map(QueryTask::new)
-              .map(QueryTask::fork)
-              .mapToLong(ForkJoinTask::join)
-              .sum();
-
-      return Pair.of(workspaceMetacard, result);
+    public String toString() {
+      return workspaceMetacard.getId() + "=" + hitCount;
+    }
+  }
+
+  /**
+   * The queries of a run against one source. Only {@code queriesPerSource} of them are submitted to
+   * the query executor at first, and each one that completes submits the next.
+   */
+  private class SourceQueue {
+    private final String source;
+
+    private final Queue<QueryTask> held = new ArrayDeque<>();
+
+    private boolean cancelled = false;
+
+    private SourceQueue(String source) {
+      this.source = source;
+    }
+
+    private synchronized void add(QueryTask queryTask) {
+      held.add(queryTask);
+      heldQueries.incrementAndGet();
+    }
+
+    private synchronized void start() {
+      for (int i = queriesPerSource; i > 0 && !held.isEmpty(); i--) {
+        submitNext();
+      }
+    }
+
+    private synchronized void submitNext() {
+      QueryTask next = cancelled ? null : held.poll();
+      if (next != null) {
+        heldQueries.decrementAndGet();
+        queryExecutor.execute(next);
+      }
+    }
+
+    /** Stops submitting queries. The held queries are cancelled along with the rest of the run. */
+    private synchronized void cancel() {
+      cancelled = true;
+      heldQueries.addAndGet(-held.size());
+      held.clear();
+    }
+  }
+
+  private class QueryTask extends FutureTask<Hits> {
+    private final SourceQueue sourceQueue;
+
+    private QueryTask(SourceQueue sourceQueue, QueryRequest queryRequest) {
+      super(() -> query(sourceQueue.source, queryRequest));
+      this.sourceQueue = sourceQueue;
+    }
+
+    @Override
+    protected void done() {
+      sourceQueue.submitNext();
+    }
+  }
+
+  private Hits query(String source, QueryRequest queryRequest) {
+    long start = System.nanoTime();
+    try {
+      final QueryResponse response = catalogFramework.query(queryRequest);
+      return new Hits(response.getHits(), getWatermark(response), true);
+    } catch (UnsupportedQueryException | FederationException | SourceUnavailableException e) {
+      LOGGER.warn("Query error", e);
+      return new Hits(0L, null, false);
+    } finally {
+      metrics.recordQuery(source, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+  }
+
+  /**
+   * The distinct queries of a run, keyed by their source, watermark and normalized CQL, and the
+   * queries whose hit counts add up to each workspace's hit count.
+   */
+  private static class QueryPlan {
+    private final Map<String, QueryRequest> queryRequests = new LinkedHashMap<>();
+
+    private final Map<String, String> querySources = new HashMap<>();
+
+    private final List<Pair<WorkspaceMetacardImpl, List<String>>> workspaceQueries =
+        new ArrayList<>();
+
+    /**
+     * Fans the hits of each query back out to the workspaces that use it. Workspaces with a query
+     * that did not complete are left out, as they were when their own query timed out.
+     */
+    private List<WorkspaceHits> getWorkspaceHits(Map<String, Hits> queryHits) {
+      List<WorkspaceHits> workspaceHits = new ArrayList<>();
+      for (Pair<WorkspaceMetacardImpl, List<String>> workspace : workspaceQueries) {
+        if (!queryHits.keySet().containsAll(workspace.getRight())) {
+          LOGGER.debug(
+              "Not all queries completed for workspace: id={}", workspace.getLeft().getId());
+          continue;
+        }
+
+        Hits hits =
+            workspace
+                .getRight()
+                .stream()
+                .map(queryHits::get)
+                .reduce(new Hits(0L, null, true), Hits::add);
+        workspaceHits.add(new WorkspaceHits(workspace.getLeft(), hits));
+      }
+      return workspaceHits;
     }
   }
 }
@@ -17,6 +17,8 @@ import static org.apache.commons.lang3.Validate.notNull;
 import static org.codice.ddf.catalog.ui.metacard.query.util.QueryAttributes.QUERY_TAG;
 import static org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceConstants.WORKSPACE_TAG;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.types.Core;
@@ -36,13 +38,17 @@ import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.concurrent.ThreadSafe;
 import javax.ws.rs.NotFoundException;
 import org.apache.commons.lang3.tuple.ImmutablePair;
@@ -68,6 +74,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
 
   private static final String ID_FIELD = "id_txt";
 
+  private static final int QUERY_IDS_PER_REQUEST = 100;
+
   private final CatalogFramework catalogFramework;
 
   private final WorkspaceTransformerImpl workspaceTransformer;
@@ -81,7 +89,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
   private final FilterBuilder filterBuilder;
 
   /** Use {@code volatile} to make the class thread-safe. */
-  private volatile int maxSubscriptions;
+  private volatile int subscriptionsPageSize = 100;
 
   /**
    * @param catalogFramework must be non-null
@@ -114,23 +122,65 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     this.filterBuilder = filterBuilder;
   }
 
+  /**
+   * @param subscriptionsPageSize the number of subscriptions read from the persistent store, and
+   *     the number of workspaces looked up, per query
+   */
   @SuppressWarnings({"unused", "WeakerAccess"} /* Needed by metatype. */)
-  public void setMaxSubscriptions(int maxSubscriptions) {
-    this.maxSubscriptions = maxSubscriptions;
+  public void setSubscriptionsPageSize(int subscriptionsPageSize) {
+    this.subscriptionsPageSize = Math.max(1, subscriptionsPageSize);
   }
 
   @Override
   public String toString() {
     return String.format(
-        "WorkspaceServiceImpl{securityService=%s, catalogFramework=%s, workspaceTransformer=%s, maxSubscriptions=%d}",
-        securityService, catalogFramework, workspaceTransformer, maxSubscriptions);
+        "WorkspaceServiceImpl{securityService=%s, catalogFramework=%s, workspaceTransformer=%s, subscriptionsPageSize=%d}",
+        securityService, catalogFramework, workspaceTransformer, subscriptionsPageSize);
   }
 
+  /**
+   * Reads the ids of all the subscribed workspaces, then looks up the workspaces a page of ids at a
+   * time, in id order, so that no filter contains more than one page of workspace ids.
+   */
   @Override
   public List<WorkspaceMetacardImpl> getWorkspaceMetacards() {
-    return createQueryRequestForSubscribedToWorkspaces()
-        .map(this::queryRequestToWorkspaceMetacards)
-        .orElse(Collections.emptyList());
+    return getWorkspaceMetacards(workspaceId -> true);
+  }
+
+  private List<WorkspaceMetacardImpl> getWorkspaceMetacards(Predicate<String> workspaceIdFilter) {
+    final int pageSize = subscriptionsPageSize;
+    final List<WorkspaceMetacardImpl> workspaceMetacards = new ArrayList<>();
+
+    final List<String> ids =
+        findSubscribedWorkspaceIds(pageSize)
+            .stream()
+            .filter(workspaceIdFilter)
+            .collect(Collectors.toList());
+    for (List<String> page : Lists.partition(ids, pageSize)) {
+      workspaceMetacards.addAll(
+          queryRequestToWorkspaceMetacards(getQueryRequestFromIds(new HashSet<>(page))));
+    }
+
+    return workspaceMetacards;
+  }
+
+  /**
+   * Reads the ids of all the subscribed workspaces, sorted. The persistent store cannot sort its
+   * results, and rewriting a subscription moves it within them, so the pages are read back to back
+   * rather than between workspace lookups, and a subscription read twice is only counted once.
+   */
+  private SortedSet<String> findSubscribedWorkspaceIds(int pageSize) {
+    final SortedSet<String> ids = new TreeSet<>();
+
+    List<Map<String, Object>> subscriptions;
+    int startIndex = 0;
+    do {
+      subscriptions = findSubscriptions(startIndex, pageSize);
+      ids.addAll(getIdsFromSubscriptions(subscriptions));
+      startIndex += pageSize;
+    } while (subscriptions.size() == pageSize);
+
+    return ids;
   }
 
   @Override
@@ -144,6 +194,10 @@ public class WorkspaceServiceImpl implements WorkspaceService {
       return Collections.emptyList();
     }
 
+    return queryForQueryMetacards(queryIds).collect(Collectors.toList());
+  }
+
+  private Stream<QueryMetacardImpl> queryForQueryMetacards(List<String> queryIds) {
     Query query = new QueryImpl(getQueriesFilter(queryIds));
     QueryRequest queryRequest = new QueryRequestImpl(query);
 
@@ -151,8 +205,29 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         .stream()
         .map(Result::getMetacard)
         .filter(Objects::nonNull)
-        .map(QueryMetacardImpl::new)
-        .collect(Collectors.toList());
+        .map(QueryMetacardImpl::new);
+  }
+
+  /**
+   * Load the query metacards of all the workspaces with as few catalog queries as possible, rather
+   * than one query per workspace.
+   */
+  private Map<String, QueryMetacardImpl> getQueryMetacardsById(
+      List<WorkspaceMetacardImpl> workspaceMetacards) {
+    List<String> queryIds =
+        workspaceMetacards
+            .stream()
+            .map(WorkspaceMetacardImpl::getQueries)
+            .flatMap(List::stream)
+            .distinct()
+            .collect(Collectors.toList());
+
+    Map<String, QueryMetacardImpl> queryMetacards = new HashMap<>();
+    for (List<String> chunk : Lists.partition(queryIds, QUERY_IDS_PER_REQUEST)) {
+      queryForQueryMetacards(chunk)
+          .forEach(queryMetacard -> queryMetacards.put(queryMetacard.getId(), queryMetacard));
+    }
+    return queryMetacards;
   }
 
   private Filter getQueriesFilter(List<String> queryIds) {
@@ -187,7 +262,8 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         };
 
     ResultIterable results =
-        ResultIterable.resultIterable(queryFunction, queryRequest, maxSubscriptions);
+        ResultIterable.resultIterable(
+            queryFunction, queryRequest, queryRequest.getQuery().getPageSize());
 
     List<Result> resultList = results.stream().collect(Collectors.toList());
 
@@ -211,7 +287,7 @@ public class WorkspaceServiceImpl implements WorkspaceService {
     return securityService.addSystemSubject(new HashMap<>());
   }
 
-  private Filter getWorkspaceFilterFromIds(Set<String> workspaceIds) {
+  private Filter getWorkspaceFilterFromIds(List<String> workspaceIds) {
     List<Filter> workspaceFilters = new ArrayList<>();
 
     for (String workspaceId : workspaceIds) {
@@ -234,35 +310,25 @@ public class WorkspaceServiceImpl implements WorkspaceService {
       return Collections.emptyList();
     }
 
-    final Filter filter = getWorkspaceFilterFromIds(workspaceIds);
+    final List<WorkspaceMetacardImpl> workspaceMetacards = new ArrayList<>();
 
-    final QueryRequest queryRequest = createQueryRequest(filter);
+    for (List<String> ids : Iterables.partition(workspaceIds, subscriptionsPageSize)) {
+      final Filter filter = getWorkspaceFilterFromIds(ids);
 
-    try {
-      return createWorkspaceMetacards(query(queryRequest));
-    } catch (CatalogQueryException e) {
-      LOGGER.info("Error querying for workspaces: queryRequest={}", queryRequest, e);
-    }
-
-    return Collections.emptyList();
-  }
+      final QueryRequest queryRequest = createQueryRequest(filter, ids.size());
 
-  /**
-   * Create a query request to find all workspace metacards.
-   *
-   * @return query request
-   */
-  private Optional<QueryRequest> createQueryRequestForSubscribedToWorkspaces() {
-    final List<Map<String, Object>> subscriptions = findSubscriptions();
-    if (subscriptions.isEmpty()) {
-      return Optional.empty();
+      try {
+        workspaceMetacards.addAll(createWorkspaceMetacards(query(queryRequest)));
+      } catch (CatalogQueryException e) {
+        LOGGER.info("Error querying for workspaces: queryRequest={}", queryRequest, e);
+      }
     }
-    final Set<String> ids = getIdsFromSubscriptions(subscriptions);
-    return Optional.of(getQueryRequestFromIds(ids));
+
+    return workspaceMetacards;
   }
 
   private QueryRequest getQueryRequestFromIds(Set<String> ids) {
-    return createQueryRequest(workspaceQueryBuilder.createFilter(ids));
+    return createQueryRequest(workspaceQueryBuilder.createFilter(ids), ids.size());
   }
 
   private Set<String> getIdsFromSubscriptions(List<Map<String, Object>> subscriptions) {
@@ -274,10 +340,10 @@ public class WorkspaceServiceImpl implements WorkspaceService {
         .collect(Collectors.toSet());
   }
 
-  private List<Map<String, Object>> findSubscriptions() {
+  private List<Map<String, Object>> findSubscriptions(int startIndex, int pageSize) {
     try {
       return persistentStore.get(
-          PersistenceType.SUBSCRIPTION_TYPE.toString(), "", 0, maxSubscriptions);
+          PersistenceType.SUBSCRIPTION_TYPE.toString(), "", startIndex, pageSize);
     } catch (PersistenceException e) {
       LOGGER.debug("Failed to get subscriptions for workspaces.", e);
     }
@@ -288,23 +354,42 @@ public class WorkspaceServiceImpl implements WorkspaceService {
    * Create a query request for a filter.
    *
    * @param filter the filter
+   * @param pageSize the most results the filter can match
    * @return query request
    */
-  private QueryRequest createQueryRequest(Filter filter) {
+  private QueryRequest createQueryRequest(Filter filter, int pageSize) {
     QueryImpl query = new QueryImpl(filter);
-    query.setPageSize(maxSubscriptions);
+    query.setPageSize(pageSize);
     query.setSortBy(new SortByImpl(Core.MODIFIED, SortOrder.DESCENDING));
     return new QueryRequestImpl(query, createProperties());
   }
 
   @Override
   public Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> getQueryMetacards() {
+    return getQueryMetacards(workspaceId -> true);
+  }
+
+  @Override
+  public Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> getQueryMetacards(
+      Predicate<String> workspaceIdFilter) {
+    notNull(workspaceIdFilter, "workspaceIdFilter must be non-null");
+
+    List<WorkspaceMetacardImpl> workspaceMetacards = getWorkspaceMetacards(workspaceIdFilter);
+    Map<String, QueryMetacardImpl> queryMetacardsById = getQueryMetacardsById(workspaceMetacards);
+
     Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
         new HashMap<>();
-    for (WorkspaceMetacardImpl workspaceMetacard : getWorkspaceMetacards()) {
+    for (WorkspaceMetacardImpl workspaceMetacard : workspaceMetacards) {
+      List<QueryMetacardImpl> workspaceQueries =
+          workspaceMetacard
+              .getQueries()
+              .stream()
+              .distinct()
+              .map(queryMetacardsById::get)
+              .filter(Objects::nonNull)
+              .collect(Collectors.toList());
       queryMetacards.put(
-          workspaceMetacard.getId(),
-          new ImmutablePair<>(workspaceMetacard, getQueryMetacards(workspaceMetacard)));
+          workspaceMetacard.getId(), new ImmutablePair<>(workspaceMetacard, workspaceQueries));
     }
     return queryMetacards;
   }
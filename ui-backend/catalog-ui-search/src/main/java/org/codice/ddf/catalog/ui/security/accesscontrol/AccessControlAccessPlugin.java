@@ -21,10 +21,10 @@ import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.ACCESS_GROUPS_READ_HAS_CHANGED;
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.ACCESS_INDIVIDUALS_HAS_CHANGED;
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.ACCESS_INDIVIDUALS_READ_HAS_CHANGED;
-import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.ATTRIBUTE_TO_SET;
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.OWNER_HAS_CHANGED;
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.isAnyObjectNull;
 
+import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.data.types.Security;
@@ -39,9 +39,9 @@ import ddf.catalog.operation.UpdateRequest;
 import ddf.catalog.plugin.AccessPlugin;
 import ddf.catalog.plugin.StopProcessingException;
 import ddf.security.SubjectIdentity;
+import java.io.Serializable;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.function.Function;
 import java.util.function.Predicate;
@@ -65,25 +65,29 @@ public class AccessControlAccessPlugin implements AccessPlugin {
     this.subjectSupplier = () -> subjectIdentity.getUniqueIdentifier(SecurityUtils.getSubject());
   }
 
-  // Because embedding '!' in the following predicates might be easily overlooked
-  private static boolean invert(boolean b) {
-    return !b;
+  /**
+   * Builds the check for a single request so the subject is resolved once, no matter how many
+   * metacards are being updated. The subject can modify access control if it owns the metacard or
+   * is one of its access-administrators.
+   */
+  private static Predicate<Metacard> subjectCanModifyAccessControl(String subject) {
+    return metacard ->
+        hasValue(metacard, Core.METACARD_OWNER, subject)
+            || hasValue(metacard, Security.ACCESS_ADMINISTRATORS, subject);
   }
 
-  // Equivalent to doing a set intersection of the subject with the access-admin list
-  private final Predicate<Metacard> subjectIsNotAccessAdmin =
-      newMetacard ->
-          invert(
-              ATTRIBUTE_TO_SET
-                  .apply(newMetacard, Security.ACCESS_ADMINISTRATORS)
-                  .contains(subjectSupplier.get()));
-
-  private final Predicate<Metacard> subjectIsNotOwner =
-      newMetacard ->
-          invert(
-              ATTRIBUTE_TO_SET
-                  .apply(newMetacard, Core.METACARD_OWNER)
-                  .contains(subjectSupplier.get()));
+  private static boolean hasValue(Metacard metacard, String attributeName, String value) {
+    final Attribute attribute = metacard.getAttribute(attributeName);
+    if (attribute == null || attribute.getValues() == null) {
+      return false;
+    }
+    for (Serializable attributeValue : attribute.getValues()) {
+      if (String.valueOf(attributeValue).equals(value)) {
+        return true;
+      }
+    }
+    return false;
+  }
 
   private final Predicate<Metacard> hasIntrigueTag =
       metacard ->
@@ -130,17 +134,23 @@ public class AccessControlAccessPlugin implements AccessPlugin {
       throw new StopProcessingException(FAILURE_OWNER_CANNOT_CHANGE);
     }
 
-    if (newMetacards
-        .stream()
-        .filter(
-            newVersionOfMetacard ->
-                isAccessControlUpdated(
-                    oldMetacard.apply(newVersionOfMetacard), newVersionOfMetacard))
-        .filter(Objects::nonNull)
-        .map(oldMetacard)
-        .filter(Objects::nonNull)
-        .filter(subjectIsNotOwner)
-        .anyMatch(subjectIsNotAccessAdmin)) {
+    List<Metacard> accessControlUpdated =
+        newMetacards
+            .stream()
+            .filter(
+                newVersionOfMetacard ->
+                    isAccessControlUpdated(
+                        oldMetacard.apply(newVersionOfMetacard), newVersionOfMetacard))
+            .map(oldMetacard)
+            .collect(Collectors.toList());
+
+    if (accessControlUpdated.isEmpty()) {
+      return input;
+    }
+
+    Predicate<Metacard> subjectCanModifyAccessControl =
+        subjectCanModifyAccessControl(subjectSupplier.get());
+    if (!accessControlUpdated.stream().allMatch(subjectCanModifyAccessControl)) {
       throw new StopProcessingException(FAILURE_NOT_ADMIN_OR_OWNER);
     }
 
@@ -15,8 +15,12 @@ package org.codice.ddf.catalog.ui.security.accesscontrol;
 
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AccessControlUtil.CONTAINS_ACL_ATTRIBUTES;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Sets;
+import com.google.common.collect.ImmutableSet;
+import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
 import ddf.catalog.data.Result;
 import ddf.catalog.data.types.Core;
@@ -28,74 +32,109 @@ import ddf.catalog.plugin.PolicyPlugin;
 import ddf.catalog.plugin.PolicyResponse;
 import ddf.catalog.plugin.impl.PolicyResponseImpl;
 import java.io.Serializable;
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
+/**
+ * Maps the access control attributes of metacards to item policy. Results in a page tend to share
+ * the same owner and access lists, so policies are cached by the raw attribute values they are
+ * built from. A result whose values were seen before gets the same immutable map without any of
+ * it being built again.
+ */
 public class AccessControlPolicyPlugin implements PolicyPlugin {
 
-  private Map<String, Set<String>> getAccessAdministratorPermission(Metacard metacard) {
-    return ImmutableMap.of(
-        Security.ACCESS_ADMINISTRATORS, AccessControlUtil.getAccessAdministrators(metacard));
-  }
+  private static final List<String> ACCESS_ATTRIBUTES =
+      ImmutableList.of(
+          Security.ACCESS_ADMINISTRATORS,
+          Security.ACCESS_GROUPS,
+          Security.ACCESS_GROUPS_READ,
+          Security.ACCESS_INDIVIDUALS_READ,
+          Security.ACCESS_INDIVIDUALS);
 
-  private Map<String, Set<String>> getIndividualPermission(Metacard metacard) {
-    return ImmutableMap.of(
-        Security.ACCESS_INDIVIDUALS, AccessControlUtil.getAccessIndividuals(metacard));
-  }
+  private static final long POLICY_CACHE_SIZE = 1000;
 
-  private Map<String, Set<String>> getReadOnlyIndividualPermission(Metacard metacard) {
-    return ImmutableMap.of(
-        Security.ACCESS_INDIVIDUALS_READ, AccessControlUtil.getAccessReadOnlyIndividuals(metacard));
-  }
+  /** Keyed by the values of the owner followed by those of each of the access attributes. */
+  private final Cache<List<List<Serializable>>, Map<String, Set<String>>> policies =
+      CacheBuilder.newBuilder().maximumSize(POLICY_CACHE_SIZE).build();
+
+  private Map<String, Set<String>> getPolicyForMetacard(Metacard metacard) {
+    final List<List<Serializable>> values = new ArrayList<>(ACCESS_ATTRIBUTES.size() + 1);
+    values.add(getRawValues(metacard, Core.METACARD_OWNER));
+    for (String attribute : ACCESS_ATTRIBUTES) {
+      values.add(getRawValues(metacard, attribute));
+    }
+
+    final Map<String, Set<String>> cached = policies.getIfPresent(values);
+    if (cached != null) {
+      return cached;
+    }
 
-  private Map<String, Set<String>> getGroupPermission(Metacard metacard) {
-    return ImmutableMap.of(Security.ACCESS_GROUPS, AccessControlUtil.getAccessGroups(metacard));
+    final Map<String, Set<String>> policy = createPolicy(values);
+    policies.put(copyOf(values), policy);
+    return policy;
   }
 
-  private Map<String, Set<String>> getReadOnlyGroupPermission(Metacard metacard) {
-    return ImmutableMap.of(
-        Security.ACCESS_GROUPS_READ, AccessControlUtil.getAccessReadOnlyGroups(metacard));
+  private static List<Serializable> getRawValues(Metacard metacard, String attributeName) {
+    final Attribute attribute = metacard.getAttribute(attributeName);
+    return attribute != null && attribute.getValues() != null
+        ? attribute.getValues()
+        : Collections.emptyList();
   }
 
-  private Map<String, Set<String>> getOwner(Metacard metacard) {
-    return ImmutableMap.of(Core.METACARD_OWNER, AccessControlUtil.getOwnerOrEmptySet(metacard));
+  /** Copies the values of a metacard, which may still change, before they are used as a key. */
+  private static List<List<Serializable>> copyOf(List<List<Serializable>> values) {
+    return values
+        .stream()
+        .map(attributeValues -> Collections.unmodifiableList(new ArrayList<>(attributeValues)))
+        .collect(Collectors.toList());
   }
 
-  private Map<String, Set<String>> getPolicyForMetacard(Metacard metacard) {
-    return Stream.of(
-            getOwner(metacard),
-            getAccessAdministratorPermission(metacard),
-            getGroupPermission(metacard),
-            getReadOnlyGroupPermission(metacard),
-            getReadOnlyIndividualPermission(metacard),
-            getIndividualPermission(metacard))
-        .map(Map::entrySet)
-        .flatMap(Collection::stream)
-        .filter(entry -> !entry.getValue().isEmpty())
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Sets::union));
+  private static Map<String, Set<String>> createPolicy(List<List<Serializable>> values) {
+    final ImmutableMap.Builder<String, Set<String>> policy = ImmutableMap.builder();
+
+    final List<Serializable> owner = values.get(0);
+    if (!owner.isEmpty()) {
+      policy.put(Core.METACARD_OWNER, ImmutableSet.of(String.valueOf(owner.get(0))));
+    }
+
+    for (int i = 0; i < ACCESS_ATTRIBUTES.size(); i++) {
+      final List<Serializable> attributeValues = values.get(i + 1);
+      if (!attributeValues.isEmpty()) {
+        policy.put(
+            ACCESS_ATTRIBUTES.get(i),
+            attributeValues.stream().map(String::valueOf).collect(ImmutableSet.toImmutableSet()));
+      }
+    }
+
+    return policy.build();
   }
 
   private Map<String, Set<String>> getPolicy(Metacard metacard) {
-    return Optional.of(metacard)
-        .filter(CONTAINS_ACL_ATTRIBUTES)
-        .map(this::getPolicyForMetacard)
-        .orElseGet(ImmutableMap::of);
+    if (!CONTAINS_ACL_ATTRIBUTES.test(metacard)) {
+      return ImmutableMap.of();
+    }
+    return getPolicyForMetacard(metacard);
   }
 
   private Map<String, Set<String>> getPolicy(List<Metacard> metacards) {
-    return metacards
+    final Map<String, Set<String>> policy = new HashMap<>();
+    metacards
         .stream()
         .filter(CONTAINS_ACL_ATTRIBUTES)
-        .map(this::getPolicy)
-        .map(Map::entrySet)
-        .flatMap(Collection::stream)
-        .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue, Sets::union));
+        .map(this::getPolicyForMetacard)
+        .distinct()
+        .forEach(
+            metacardPolicy ->
+                metacardPolicy.forEach(
+                    (attribute, values) ->
+                        policy.computeIfAbsent(attribute, k -> new HashSet<>()).addAll(values)));
+    return policy;
   }
 
   @Override
@@ -112,7 +151,8 @@ public class AccessControlPolicyPlugin implements PolicyPlugin {
   @Override
   public PolicyResponse processPreDelete(
       List<Metacard> metacards, Map<String, Serializable> properties) {
-    return new PolicyResponseImpl(getPolicy(metacards), getPolicy(metacards));
+    final Map<String, Set<String>> policy = getPolicy(metacards);
+    return new PolicyResponseImpl(policy, policy);
   }
 
   @Override
@@ -16,7 +16,10 @@ package org.codice.ddf.catalog.ui.security.accesscontrol;
 import static org.codice.ddf.catalog.ui.security.Constants.SYSTEM_TEMPLATE;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.data.types.Security;
@@ -32,7 +35,10 @@ import ddf.security.SubjectOperations;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
 import org.apache.shiro.SecurityUtils;
 import org.geotools.filter.visitor.DuplicatingFilterVisitor;
 import org.opengis.filter.Filter;
@@ -71,11 +77,23 @@ import org.slf4j.LoggerFactory;
  *   <li>The predicate is a negative check, such as {@link org.opengis.filter.PropertyIsNotEqualTo}.
  *   <li>The predicate falls under the logical composite {@link org.opengis.filter.Not} operator.
  * </ul>
+ *
+ * The policy branch built for a subject only depends on its identifier and groups, so it is cached
+ * by both for a short time rather than rebuilt on every query. A change in either produces a new
+ * key, so a subject whose groups change never sees a stale branch.
+ *
+ * <p>The tags a filter is limited to are always taken from the filter itself, never from request
+ * properties. Because tags are checked before the subject is looked up, queries that are not
+ * limited to access controlled metacards never touch the subject.
  */
 public class AccessControlPreQueryPlugin implements PreQueryPlugin {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(AccessControlPreQueryPlugin.class);
 
+  private static final long POLICY_CACHE_SIZE = 1000;
+
+  private static final long POLICY_CACHE_EXPIRATION_MINUTES = 5;
+
   private final FilterBuilder filterBuilder;
 
   private final SubjectIdentity identity;
@@ -84,6 +102,12 @@ public class AccessControlPreQueryPlugin implements PreQueryPlugin {
 
   private final AccessControlSecurityConfiguration configuration;
 
+  private final Cache<Pair<String, Set<String>>, Filter> policyCache =
+      CacheBuilder.newBuilder()
+          .maximumSize(POLICY_CACHE_SIZE)
+          .expireAfterWrite(POLICY_CACHE_EXPIRATION_MINUTES, TimeUnit.MINUTES)
+          .build();
+
   private SubjectOperations subjectOperations;
 
   public AccessControlPreQueryPlugin(
@@ -106,31 +130,14 @@ public class AccessControlPreQueryPlugin implements PreQueryPlugin {
       return input;
     }
 
-    final String subjectIdentifier = getSubjectIdentifier();
-    final Set<String> groups = new HashSet<>(getSubjectGroups());
-    final String groupThatCanSeeEverything = configuration.getSystemUserAttributeValue();
-
-    if (groups.contains(groupThatCanSeeEverything)) {
-      LOGGER.debug(
-          "Will not modify filter; subject ({}) had at least one group [{}] that was exempt [{}]",
-          subjectIdentifier,
-          groups,
-          groupThatCanSeeEverything);
-      return input;
-    }
-
     final Query query = input.getQuery();
     LOGGER.trace("Received query [{}]", query);
 
-    final TagAggregationVisitor tagVisitor = new TagAggregationVisitor();
-    query.accept(tagVisitor, null);
-
-    final Set<String> discoveredTags = tagVisitor.getTags();
+    final Set<String> discoveredTags = getQueryTags(input);
     if (CollectionUtils.isEmpty(discoveredTags)) {
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug(
-            "Will not modify filter; subject's ({}) query [{}] did not imply all results had tags",
-            subjectIdentifier,
+            "Will not modify filter; query [{}] did not imply all results had tags",
             filterOnly(query));
       }
       return input;
@@ -142,9 +149,8 @@ public class AccessControlPreQueryPlugin implements PreQueryPlugin {
     if (CollectionUtils.isNotEmpty(tagsNotAccessControlled)) {
       if (LOGGER.isDebugEnabled()) {
         LOGGER.debug(
-            "Will not modify filter; subject's ({}) query [{}] referenced tags "
+            "Will not modify filter; query [{}] referenced tags "
                 + "[{}] that are not in access controlled set [{}]",
-            subjectIdentifier,
             filterOnly(query),
             tagsNotAccessControlled,
             tagsThatAreAccessControlled);
@@ -152,7 +158,20 @@ public class AccessControlPreQueryPlugin implements PreQueryPlugin {
       return input;
     }
 
-    final Filter policyBranch = createSecurityPolicySubset(subjectIdentifier, groups);
+    final String subjectIdentifier = getSubjectIdentifier();
+    final Set<String> groups = new HashSet<>(getSubjectGroups());
+    final String groupThatCanSeeEverything = configuration.getSystemUserAttributeValue();
+
+    if (groups.contains(groupThatCanSeeEverything)) {
+      LOGGER.debug(
+          "Will not modify filter; subject ({}) had at least one group [{}] that was exempt [{}]",
+          subjectIdentifier,
+          groups,
+          groupThatCanSeeEverything);
+      return input;
+    }
+
+    final Filter policyBranch = getSecurityPolicySubset(subjectIdentifier, groups);
     if (LOGGER.isDebugEnabled()) {
       LOGGER.debug(
           "Query filter [{}] will be modified with access control policy [{}]",
@@ -191,11 +210,30 @@ public class AccessControlPreQueryPlugin implements PreQueryPlugin {
     return groups;
   }
 
+  /** Returns the tags every result of the request is guaranteed to have. */
+  private Set<String> getQueryTags(QueryRequest request) {
+    final TagAggregationVisitor tagVisitor = new TagAggregationVisitor();
+    request.getQuery().accept(tagVisitor, null);
+    return tagVisitor.getTags();
+  }
+
   private Filter filterOnly(Query query) {
     final DuplicatingFilterVisitor dupeVisitor = new DuplicatingFilterVisitor();
     return (Filter) query.accept(dupeVisitor, null);
   }
 
+  private Filter getSecurityPolicySubset(String identifier, Set<String> groups) {
+    final Pair<String, Set<String>> key = ImmutablePair.of(identifier, ImmutableSet.copyOf(groups));
+    final Filter cached = policyCache.getIfPresent(key);
+    if (cached != null) {
+      LOGGER.trace("Using cached access control policy for subject ({})", identifier);
+      return cached;
+    }
+    final Filter policyBranch = createSecurityPolicySubset(identifier, groups);
+    policyCache.put(key, policyBranch);
+    return policyBranch;
+  }
+
   private Filter createSecurityPolicySubset(String identifier, Set<String> groups) {
     final ImmutableList.Builder<Filter> policyBranch = ImmutableList.builder();
     policyBranch.add(isEqualToText(Core.METACARD_OWNER, identifier));
@@ -23,8 +23,11 @@ import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.filter.FilterBuilder;
 import ddf.catalog.operation.ProcessingDetails;
+import ddf.catalog.operation.Query;
 import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.QueryImpl;
+import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.operation.impl.QueryResponseImpl;
 import ddf.catalog.source.SourceUnavailableException;
 import ddf.catalog.source.UnsupportedQueryException;
@@ -36,6 +39,7 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
@@ -46,6 +50,9 @@ import org.codice.ddf.catalog.ui.CqlParseException;
 import org.codice.ddf.catalog.ui.metacard.transformer.CsvTransformImpl;
 import org.codice.ddf.catalog.ui.query.cql.CqlQueryResponseImpl;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequestImpl;
+import org.codice.ddf.catalog.ui.query.cql.CqlResponseCache;
+import org.codice.ddf.catalog.ui.query.cql.MetacardTypeDescriptorCache;
+import org.codice.ddf.catalog.ui.query.cql.ResultConversionPool;
 import org.codice.ddf.catalog.ui.query.cql.StatusImpl;
 import org.codice.ddf.catalog.ui.query.utility.CqlQueries;
 import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
@@ -67,6 +74,12 @@ public class CqlQueriesImpl implements CqlQueries {
 
   private FilterAdapter filterAdapter;
 
+  private ResultConversionPool resultConversionPool;
+
+  private MetacardTypeDescriptorCache typeDescriptorCache;
+
+  private CqlResponseCache responseCache;
+
   private static final String METRICS_SOURCE_ELAPSED_PREFIX = "metrics.source.elapsed.";
 
   private static final Gson GSON =
@@ -92,7 +105,49 @@ public class CqlQueriesImpl implements CqlQueries {
   public CqlQueryResponse executeCqlQuery(CqlRequest cqlRequest)
       throws UnsupportedQueryException, SourceUnavailableException, FederationException,
           CqlParseException {
+    return executeCqlQuery(cqlRequest, false);
+  }
+
+  /**
+   * Executes the query described by {@code cqlRequest}.
+   *
+   * @param lazyResults when true, the results of the returned response are converted as they are
+   *     read rather than up front. Intended for callers that serialize the response once, directly
+   *     to an output stream.
+   */
+  public CqlQueryResponse executeCqlQuery(CqlRequest cqlRequest, boolean lazyResults)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException,
+          CqlParseException {
     QueryRequest request = cqlRequest.createQueryRequest(catalogFramework.getId(), filterBuilder);
+
+    QueryResponse response;
+    if (responseCache != null && responseCache.isCacheable(request, catalogFramework.getId())) {
+      CqlResponseCache.Key cacheKey = responseCache.key(cqlRequest, request);
+      response = responseCache.get(cacheKey);
+      if (response == null) {
+        response = query(cqlRequest, request);
+        responseCache.put(cacheKey, response);
+      }
+    } else {
+      response = query(cqlRequest, request);
+    }
+
+    return new CqlQueryResponseImpl(
+        cqlRequest.getId(),
+        request,
+        response,
+        cqlRequest.getSourceResponseString(),
+        cqlRequest.isNormalize(),
+        filterAdapter,
+        actionRegistry,
+        descriptors,
+        typeDescriptorCache,
+        resultConversionPool,
+        lazyResults);
+  }
+
+  private QueryResponse query(CqlRequest cqlRequest, QueryRequest request)
+      throws UnsupportedQueryException, SourceUnavailableException, FederationException {
     Stopwatch stopwatch = Stopwatch.createStarted();
 
     List<QueryResponse> responses = Collections.synchronizedList(new ArrayList<>());
@@ -178,29 +233,18 @@ public class CqlQueriesImpl implements CqlQueries {
 
     properties.put("statusBySource", (Serializable) statusBySource);
 
-    QueryResponse response =
-        new QueryResponseImpl(
-            request,
-            results,
-            true,
-            responses
-                .stream()
-                .filter(Objects::nonNull)
-                .map(QueryResponse::getHits)
-                .findFirst()
-                .orElse(-1L),
-            properties,
-            processingDetails);
-
-    return new CqlQueryResponseImpl(
-        cqlRequest.getId(),
+    return new QueryResponseImpl(
         request,
-        response,
-        cqlRequest.getSourceResponseString(),
-        cqlRequest.isNormalize(),
-        filterAdapter,
-        actionRegistry,
-        descriptors);
+        results,
+        true,
+        responses
+            .stream()
+            .filter(Objects::nonNull)
+            .map(QueryResponse::getHits)
+            .findFirst()
+            .orElse(-1L),
+        properties,
+        processingDetails);
   }
 
   private List<Result> retrieveHitCount(QueryRequest request, List<QueryResponse> responses)
@@ -230,6 +274,43 @@ public class CqlQueriesImpl implements CqlQueries {
         .collect(Collectors.toList());
   }
 
+  /**
+   * Lazily iterates the results of {@code cqlRequest}. The catalog is queried one page at a time as
+   * the iterator advances, so at most one page of results is held in memory. Results are returned
+   * as found, without the response caching or conversion of {@link #executeCqlQuery(CqlRequest)}.
+   *
+   * @param pageSize maximum number of results to request from the catalog at a time
+   * @param timeoutMillis longest each page query may take, or a value less than 1 to keep the
+   *     timeout of the request
+   */
+  public Iterator<Result> iterateResults(CqlRequest cqlRequest, int pageSize, long timeoutMillis)
+      throws CqlParseException {
+    QueryRequest request = cqlRequest.createQueryRequest(catalogFramework.getId(), filterBuilder);
+    Query query = request.getQuery();
+    QueryRequest pagedRequest =
+        new QueryRequestImpl(
+            new QueryImpl(
+                query,
+                query.getStartIndex(),
+                Math.max(1, Math.min(pageSize, query.getPageSize())),
+                query.getSortBy(),
+                query.requestsTotalResultsCount(),
+                pageTimeout(query.getTimeoutMillis(), timeoutMillis)),
+            request.isEnterprise(),
+            request.getSourceIds(),
+            request.getProperties());
+    return ResultIterable.resultIterable(
+            catalogFramework::query, pagedRequest, cqlRequest.getCount())
+        .iterator();
+  }
+
+  private static long pageTimeout(long requestTimeoutMillis, long timeoutMillis) {
+    if (timeoutMillis < 1) {
+      return requestTimeoutMillis;
+    }
+    return requestTimeoutMillis > 0 ? Math.min(requestTimeoutMillis, timeoutMillis) : timeoutMillis;
+  }
+
   @Override
   public CqlRequest getCqlRequestFromJson(String jsonBody) {
     return GSON.fromJson(jsonBody, CqlRequestImpl.class);
@@ -244,4 +325,19 @@ public class CqlQueriesImpl implements CqlQueries {
   public void setDescriptors(TransformerDescriptors descriptors) {
     this.descriptors = descriptors;
   }
+
+  @SuppressWarnings("WeakerAccess" /* setter must be public for blueprint access */)
+  public void setResultConversionPool(ResultConversionPool resultConversionPool) {
+    this.resultConversionPool = resultConversionPool;
+  }
+
+  @SuppressWarnings("WeakerAccess" /* setter must be public for blueprint access */)
+  public void setTypeDescriptorCache(MetacardTypeDescriptorCache typeDescriptorCache) {
+    this.typeDescriptorCache = typeDescriptorCache;
+  }
+
+  @SuppressWarnings("WeakerAccess" /* setter must be public for blueprint access */)
+  public void setResponseCache(CqlResponseCache responseCache) {
+    this.responseCache = responseCache;
+  }
 }
@@ -18,6 +18,7 @@ import static ddf.catalog.util.impl.ResultIterable.resultIterable;
 import static javax.ws.rs.core.HttpHeaders.CONTENT_TYPE;
 
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import ddf.catalog.CatalogFramework;
@@ -57,29 +58,40 @@ import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.function.Function;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.Nullable;
 import javax.ws.rs.NotFoundException;
 import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.MapUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.BoundedInputStream;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.shiro.subject.Subject;
+import org.apache.shiro.util.ThreadContext;
 import org.codice.ddf.catalog.ui.config.ConfigurationApplication;
 import org.codice.ddf.catalog.ui.metacard.EntityTooLargeException;
+import org.codice.ddf.catalog.ui.query.cql.MetacardTypeDescriptorCache;
 import org.codice.ddf.catalog.ui.query.utility.EndpointUtility;
 import org.codice.ddf.catalog.ui.security.LogSanitizer;
+import org.codice.ddf.platform.util.StandardThreadFactoryBuilder;
 import org.codice.gsonsupport.GsonTypeAdapters.LongDoubleTypeAdapter;
 import org.geotools.factory.CommonFactoryFinder;
 import org.geotools.factory.FactoryIteratorProvider;
@@ -122,6 +134,14 @@ public class EndpointUtil implements EndpointUtility {
 
   private static final String ISINJECTED_KEY = "isInjected";
 
+  private static final String LOOKUP_THREADS_PROPERTY = "metacardLookupThreads";
+
+  private static final int DEFAULT_LOOKUP_THREADS = 4;
+
+  private static final int MAX_QUEUED_LOOKUPS = 64;
+
+  private static final long LOOKUP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
   private static int pageSize = 250;
 
   private static final Gson GSON =
@@ -136,6 +156,24 @@ public class EndpointUtil implements EndpointUtility {
 
   private List<String> whiteListedMetacardTypes = Collections.emptyList();
 
+  private MetacardTypeDescriptorCache typeDescriptorCache;
+
+  private volatile MetacardTypeMapSnapshot metacardTypeMapSnapshot;
+
+  /**
+   * Shared by all requests. Once its queue is full, further lookups run on the requesting thread
+   * instead of waiting behind every other request's lookups.
+   */
+  private final ThreadPoolExecutor lookupExecutor =
+      new ThreadPoolExecutor(
+          DEFAULT_LOOKUP_THREADS,
+          DEFAULT_LOOKUP_THREADS,
+          60L,
+          TimeUnit.SECONDS,
+          new ArrayBlockingQueue<>(MAX_QUEUED_LOOKUPS),
+          StandardThreadFactoryBuilder.newThreadFactory("metacardLookupThread"),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+
   public EndpointUtil(
       List<MetacardType> metacardTypes,
       CatalogFramework catalogFramework,
@@ -149,6 +187,7 @@ public class EndpointUtil implements EndpointUtility {
     this.injectableAttributes = injectableAttributes;
     this.attributeRegistry = attributeRegistry;
     this.config = config;
+    this.lookupExecutor.allowCoreThreadTimeOut(true);
     registerGeoToolsFunctionFactory();
   }
 
@@ -336,6 +375,13 @@ public class EndpointUtil implements EndpointUtility {
         storeIds);
   }
 
+  /**
+   * Looks up the metacards whose {@code attributeName} matches any of {@code attributeValues}.
+   * Large value sets are split into chunks of {@link
+   * ConfigurationApplication#getMetacardLookupChunkSize()} values so that no single catalog query
+   * carries a huge boolean filter, and the chunks are queried concurrently. The first chunk is
+   * queried on the calling thread.
+   */
   public Map<String, Result> getMetacardsWithTagByAttributes(
       String attributeName,
       Collection<String> attributeValues,
@@ -345,6 +391,53 @@ public class EndpointUtil implements EndpointUtility {
       return new HashMap<>();
     }
 
+    List<String> values = new ArrayList<>(new LinkedHashSet<>(attributeValues));
+    int chunkSize = config.getMetacardLookupChunkSize();
+    if (chunkSize <= 0 || values.size() <= chunkSize) {
+      return getMetacardsWithTagByAttributeChunk(attributeName, values, tagFilter, storeIds);
+    }
+
+    long deadline = System.currentTimeMillis() + LOOKUP_TIMEOUT_MILLIS;
+    Subject subject = ThreadContext.getSubject();
+    List<List<String>> chunks = Lists.partition(values, chunkSize);
+    List<Future<Map<String, Result>>> lookups = new ArrayList<>();
+    for (List<String> chunk : chunks.subList(1, chunks.size())) {
+      Callable<Map<String, Result>> lookup =
+          () -> getMetacardsWithTagByAttributeChunk(attributeName, chunk, tagFilter, storeIds);
+      lookups.add(lookupExecutor.submit(subject == null ? lookup : subject.associateWith(lookup)));
+    }
+
+    Map<String, Result> results = new HashMap<>();
+    try {
+      results.putAll(
+          getMetacardsWithTagByAttributeChunk(attributeName, chunks.get(0), tagFilter, storeIds));
+      for (Future<Map<String, Result>> lookup : lookups) {
+        lookup
+            .get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+            .forEach((id, result) -> results.merge(id, result, EndpointUtil::newestWinsMerge));
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while looking up metacards", e);
+    } catch (TimeoutException e) {
+      throw new IllegalStateException(
+          String.format("Metacard lookup did not complete within %dms", LOOKUP_TIMEOUT_MILLIS), e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException("Failed to look up metacards", e.getCause());
+    } finally {
+      lookups.forEach(lookup -> lookup.cancel(true));
+    }
+    return results;
+  }
+
+  private Map<String, Result> getMetacardsWithTagByAttributeChunk(
+      String attributeName,
+      Collection<String> attributeValues,
+      Filter tagFilter,
+      @Nullable Set<String> storeIds) {
     Filter attributeFilter = buildAttributeFilter(attributeName, attributeValues, true);
     Filter queryFilter = filterBuilder.allOf(attributeFilter, tagFilter);
 
@@ -372,6 +465,34 @@ public class EndpointUtil implements EndpointUtility {
                 EndpointUtil::firstInWinsMerge));
   }
 
+  public void refresh(Map<String, Object> configuration) {
+    if (MapUtils.isEmpty(configuration)) {
+      return;
+    }
+
+    Object configuredThreads = configuration.get(LOOKUP_THREADS_PROPERTY);
+    if (configuredThreads instanceof Integer) {
+      setMetacardLookupThreads((Integer) configuredThreads);
+    }
+  }
+
+  /** @param threads number of metacard lookup queries that may run at once, across all requests */
+  public synchronized void setMetacardLookupThreads(Integer threads) {
+    int size = threads == null || threads < 1 ? DEFAULT_LOOKUP_THREADS : threads;
+    LOGGER.debug("Setting metacard lookup threads : {}", size);
+    if (size > lookupExecutor.getMaximumPoolSize()) {
+      lookupExecutor.setMaximumPoolSize(size);
+      lookupExecutor.setCorePoolSize(size);
+    } else if (size < lookupExecutor.getMaximumPoolSize()) {
+      lookupExecutor.setCorePoolSize(size);
+      lookupExecutor.setMaximumPoolSize(size);
+    }
+  }
+
+  public void destroy() {
+    lookupExecutor.shutdownNow();
+  }
+
   private Filter buildAttributeFilter(
       String attributeName, Collection<String> attributeValues, boolean isExactMatch) {
     if (CollectionUtils.isEmpty(attributeValues)) {
@@ -401,6 +522,10 @@ public class EndpointUtil implements EndpointUtility {
     return properties;
   }
 
+  public void setTypeDescriptorCache(MetacardTypeDescriptorCache typeDescriptorCache) {
+    this.typeDescriptorCache = typeDescriptorCache;
+  }
+
   private List<MetacardType> getFilteredMetacardTypes() {
     if (!whiteListedMetacardTypes.isEmpty()) {
       return metacardTypes
@@ -411,7 +536,51 @@ public class EndpointUtil implements EndpointUtility {
     return metacardTypes;
   }
 
+  /**
+   * @return the attributes of every whitelisted metacard type, including injected attributes. When
+   *     a {@link MetacardTypeDescriptorCache} is set the map is only rebuilt after a metacard type
+   *     or injectable attribute changes, or the {@link AttributeRegistry} resolves an injectable
+   *     attribute differently, so the returned map is unmodifiable.
+   */
   public Map<String, Object> getMetacardTypeMap() {
+    // The registry has no change notifications, so it is consulted on every call
+    List<InjectableAttribute> injected = new ArrayList<>(injectableAttributes);
+    List<AttributeDescriptor> injectedDescriptors = lookupDescriptors(injected);
+    if (typeDescriptorCache == null) {
+      return buildMetacardTypeMap(injected, injectedDescriptors);
+    }
+
+    long version = typeDescriptorCache.getVersion();
+    List<String> whiteList = whiteListedMetacardTypes;
+    MetacardTypeMapSnapshot snapshot = metacardTypeMapSnapshot;
+    if (snapshot != null
+        && snapshot.version == version
+        && snapshot.whiteList == whiteList
+        && snapshot.injectedDescriptors.equals(injectedDescriptors)) {
+      return snapshot.metacardTypeMap;
+    }
+
+    Map<String, Object> metacardTypeMap =
+        Collections.unmodifiableMap(buildMetacardTypeMap(injected, injectedDescriptors));
+    metacardTypeMapSnapshot =
+        new MetacardTypeMapSnapshot(version, whiteList, injectedDescriptors, metacardTypeMap);
+    return metacardTypeMap;
+  }
+
+  /**
+   * @return the registered descriptor of each injectable attribute, in the same order, with {@code
+   *     null} for attributes the registry does not know about
+   */
+  private List<AttributeDescriptor> lookupDescriptors(List<InjectableAttribute> attributes) {
+    List<AttributeDescriptor> descriptors = new ArrayList<>(attributes.size());
+    for (InjectableAttribute attribute : attributes) {
+      descriptors.add(attributeRegistry.lookup(attribute.attribute()).orElse(null));
+    }
+    return descriptors;
+  }
+
+  private Map<String, Object> buildMetacardTypeMap(
+      List<InjectableAttribute> injected, List<AttributeDescriptor> injectedDescriptors) {
     Map<String, Object> resultTypes = new HashMap<>();
     for (MetacardType metacardType : getFilteredMetacardTypes()) {
       Map<String, Object> attributes = new HashMap<>();
@@ -425,13 +594,13 @@ public class EndpointUtil implements EndpointUtility {
       }
       resultTypes.put(metacardType.getName(), attributes);
     }
-    for (InjectableAttribute attribute : injectableAttributes) {
-      Optional<AttributeDescriptor> lookup = attributeRegistry.lookup(attribute.attribute());
-      if (!lookup.isPresent()) {
+    for (int i = 0; i < injected.size(); i++) {
+      InjectableAttribute attribute = injected.get(i);
+      AttributeDescriptor descriptor = injectedDescriptors.get(i);
+      if (descriptor == null) {
         continue;
       }
 
-      AttributeDescriptor descriptor = lookup.get();
       Map<String, Object> attributeProperties = new HashMap<>();
       attributeProperties.put(TYPE_KEY, descriptor.getType().getAttributeFormat().name());
       attributeProperties.put(MULTIVALUED_KEY, descriptor.isMultiValued());
@@ -498,11 +667,12 @@ public class EndpointUtil implements EndpointUtility {
             .map(MetacardType::getName)
             .collect(Collectors.toSet());
 
+    Map<String, Object> metacardTypeMap = getMetacardTypeMap();
     List<Map<String, Object>> typesList = new ArrayList<>();
     for (String type : types) {
       Map<String, Object> typeMap = new HashMap<>();
       typeMap.put("type-name", type);
-      typeMap.put("type", getMetacardTypeMap().get(type));
+      typeMap.put("type", metacardTypeMap.get(type));
 
       typeMap.put(
           "ids",
@@ -760,6 +930,29 @@ public class EndpointUtil implements EndpointUtility {
     return filterBuilder;
   }
 
+  /**
+   * Chunked lookups each return their results newest first, so when the same metacard is found by
+   * more than one chunk the most recently modified copy is kept, as a single lookup would have.
+   */
+  private static Result newestWinsMerge(Result current, Result incoming) {
+    Date currentModified = getModified(current);
+    Date incomingModified = getModified(incoming);
+    if (incomingModified != null
+        && (currentModified == null || incomingModified.after(currentModified))) {
+      return firstInWinsMerge(incoming, current);
+    }
+    return firstInWinsMerge(current, incoming);
+  }
+
+  @Nullable
+  private static Date getModified(Result result) {
+    Attribute modified = result.getMetacard().getAttribute(Core.MODIFIED);
+    if (modified != null && modified.getValue() instanceof Date) {
+      return (Date) modified.getValue();
+    }
+    return null;
+  }
+
   private static Result firstInWinsMerge(Result current, Result incoming) {
     LOGGER.trace(
         "While collecting metacards into map, there were metacards found with a duplicate key.\nOld: {}\nNew: {}",
@@ -811,4 +1004,26 @@ public class EndpointUtil implements EndpointUtility {
       return null;
     }
   }
+
+  private static class MetacardTypeMapSnapshot {
+
+    private final long version;
+
+    private final List<String> whiteList;
+
+    private final List<AttributeDescriptor> injectedDescriptors;
+
+    private final Map<String, Object> metacardTypeMap;
+
+    private MetacardTypeMapSnapshot(
+        long version,
+        List<String> whiteList,
+        List<AttributeDescriptor> injectedDescriptors,
+        Map<String, Object> metacardTypeMap) {
+      this.version = version;
+      this.whiteList = whiteList;
+      this.injectedDescriptors = injectedDescriptors;
+      this.metacardTypeMap = metacardTypeMap;
+    }
+  }
 }
@@ -0,0 +1,252 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Lists;
+import ddf.action.Action;
+import ddf.catalog.operation.QueryResponse;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletResponse;
+import org.codice.ddf.catalog.ui.config.ConfigurationApplication;
+import org.codice.ddf.catalog.ui.query.cql.SourceWarningsFilterManager;
+import org.codice.ddf.catalog.ui.query.handlers.CqlTransformHandler;
+import org.codice.ddf.catalog.ui.query.suggestion.DmsCoordinateProcessor;
+import org.codice.ddf.catalog.ui.query.suggestion.LatLonCoordinateProcessor;
+import org.codice.ddf.catalog.ui.query.suggestion.MgrsCoordinateProcessor;
+import org.codice.ddf.catalog.ui.query.suggestion.UtmUpsCoordinateProcessor;
+import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
+import org.codice.ddf.catalog.ui.query.utility.CqlRequest;
+import org.codice.ddf.catalog.ui.query.utility.CqlResult;
+import org.codice.ddf.catalog.ui.query.utility.MetacardAttribute;
+import org.codice.ddf.catalog.ui.query.validate.CqlValidationHandler;
+import org.codice.ddf.catalog.ui.util.CqlQueriesImpl;
+import org.codice.ddf.catalog.ui.util.EndpointUtil;
+import org.junit.Before;
+import org.junit.Test;
+import spark.Request;
+import spark.Response;
+
+public class QueryApplicationTest {
+
+  private static final String CQL_BODY =
+      "{\"src\":\"ddf.distribution\",\"cql\":\"anyText ILIKE '*'\"}";
+
+  private QueryApplication queryApplication;
+
+  private CqlQueriesImpl cqlQueryUtil;
+
+  private ConfigurationApplication configurationApplication;
+
+  private Request request;
+
+  @Before
+  public void setUp() throws Exception {
+    queryApplication =
+        new QueryApplication(
+            mock(CqlTransformHandler.class),
+            mock(CqlValidationHandler.class),
+            mock(LatLonCoordinateProcessor.class),
+            mock(DmsCoordinateProcessor.class),
+            mock(MgrsCoordinateProcessor.class),
+            mock(UtmUpsCoordinateProcessor.class),
+            mock(SourceWarningsFilterManager.class));
+
+    request = mock(Request.class);
+    EndpointUtil endpointUtil = mock(EndpointUtil.class);
+    when(endpointUtil.safeGetBody(request)).thenReturn(CQL_BODY);
+    queryApplication.setEndpointUtil(endpointUtil);
+
+    cqlQueryUtil = mock(CqlQueriesImpl.class);
+    queryApplication.setCqlQueryUtil(cqlQueryUtil);
+
+    configurationApplication = mock(ConfigurationApplication.class);
+    queryApplication.setConfigurationApplication(configurationApplication);
+  }
+
+  @Test
+  public void testStreamedResponseMatchesBufferedResponse() throws Exception {
+    List<String> ids = ImmutableList.of("first", "second é", "third \"quoted\"");
+    when(cqlQueryUtil.executeCqlQuery(any(CqlRequest.class), anyBoolean()))
+        .thenAnswer(
+            invocation ->
+                new TestQueryResponse(Lists.<String, CqlResult>transform(ids, TestResult::new)));
+
+    when(configurationApplication.getStreamingQueryResponsesEnabled()).thenReturn(false);
+    ByteArrayOutputStream buffered = new ByteArrayOutputStream();
+    Object body = queryApplication.executeCqlQuery(request, response(buffered));
+    buffered.write(body.toString().getBytes(StandardCharsets.UTF_8));
+
+    when(configurationApplication.getStreamingQueryResponsesEnabled()).thenReturn(true);
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    assertThat(queryApplication.executeCqlQuery(request, response(streamed)), is(""));
+
+    verify(cqlQueryUtil).executeCqlQuery(any(CqlRequest.class), eq(true));
+    assertThat(streamed.toByteArray(), is(buffered.toByteArray()));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testStreamedConversionFailureIsThrownBeforeWriting() throws Exception {
+    when(cqlQueryUtil.executeCqlQuery(any(CqlRequest.class), anyBoolean()))
+        .thenReturn(
+            new TestQueryResponse(
+                Lists.<String, CqlResult>transform(
+                    ImmutableList.of("first"),
+                    id -> {
+                      throw new IllegalStateException("Unable to convert " + id);
+                    })));
+    when(configurationApplication.getStreamingQueryResponsesEnabled()).thenReturn(true);
+
+    ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+    try {
+      queryApplication.executeCqlQuery(request, response(streamed));
+    } finally {
+      assertThat(streamed.size(), is(0));
+    }
+  }
+
+  private static Response response(ByteArrayOutputStream output) throws Exception {
+    HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+    when(servletResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream(output));
+    Response response = mock(Response.class);
+    when(response.raw()).thenReturn(servletResponse);
+    return response;
+  }
+
+  private static class TestQueryResponse implements CqlQueryResponse {
+
+    private final String id = "response";
+
+    private final List<CqlResult> results;
+
+    private final Set<String> warnings = new HashSet<>();
+
+    private TestQueryResponse(List<CqlResult> results) {
+      this.results = results;
+    }
+
+    @Override
+    public QueryResponse getQueryResponse() {
+      return null;
+    }
+
+    @Override
+    public List<CqlResult> getResults() {
+      return results;
+    }
+
+    @Override
+    public Map<String, Map<String, MetacardAttribute>> getTypes() {
+      return Collections.emptyMap();
+    }
+
+    @Override
+    public String getId() {
+      return id;
+    }
+
+    @Override
+    public Set<String> getWarnings() {
+      return warnings;
+    }
+  }
+
+  private static class TestResult implements CqlResult {
+
+    private final Map<String, Object> metacard;
+
+    private final Double relevance = 0.5;
+
+    private TestResult(String id) {
+      this.metacard = ImmutableMap.of("properties", ImmutableMap.of("id", id));
+    }
+
+    @Override
+    public Map<String, Object> getMetacard() {
+      return metacard;
+    }
+
+    @Override
+    public Double getDistance() {
+      return null;
+    }
+
+    @Override
+    public Double getRelevance() {
+      return relevance;
+    }
+
+    @Override
+    public List<Action> getActions() {
+      return Collections.emptyList();
+    }
+
+    @Override
+    public boolean getHasThumbnail() {
+      return false;
+    }
+
+    @Override
+    public boolean getIsResourceLocal() {
+      return true;
+    }
+
+    @Override
+    public Map<String, Integer> getMatches() {
+      return Collections.emptyMap();
+    }
+  }
+
+  private static class ByteArrayServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream output;
+
+    ByteArrayServletOutputStream(ByteArrayOutputStream output) {
+      this.output = output;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      // writes never block
+    }
+
+    @Override
+    public void write(int b) {
+      output.write(b);
+    }
+  }
+}
@@ -14,6 +14,8 @@
 package org.codice.ddf.catalog.ui.query.cql;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.Matchers.nullValue;
 import static org.hamcrest.core.Is.is;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
@@ -53,6 +55,53 @@ public class CqlResultImplTest {
     distanceCheck(123.0, 123.0);
   }
 
+  @Test
+  public void testDistanceFromSpatialQuery() {
+    QuerySpatialContext spatialContext =
+        new QuerySpatialContext(
+            new QueryImpl(filterBuilder.attribute("location").intersecting().wkt("POINT (0 0)")),
+            filterAdapter);
+    ActionRegistry actionRegistry = mock(ActionRegistry.class);
+    when(actionRegistry.list(any())).thenReturn(Collections.emptyList());
+
+    MetacardImpl first = new MetacardImpl();
+    first.setLocation("POINT (0 1)");
+    MetacardImpl second = new MetacardImpl();
+    second.setLocation("POINT (0 1)");
+
+    MetacardTypeDescriptorCache typeDescriptorCache = new MetacardTypeDescriptorCache();
+
+    CqlResultImpl firstResult =
+        new CqlResultImpl(
+            new ResultImpl(first),
+            null,
+            false,
+            spatialContext,
+            typeDescriptorCache,
+            actionRegistry);
+    CqlResultImpl secondResult =
+        new CqlResultImpl(
+            new ResultImpl(second),
+            null,
+            false,
+            spatialContext,
+            typeDescriptorCache,
+            actionRegistry);
+
+    assertThat(firstResult.getDistance(), closeTo(111_195.0, 1.0));
+    assertThat(secondResult.getDistance(), is(firstResult.getDistance()));
+  }
+
+  @Test
+  public void testNonSpatialQueryKeepsResultDistance() {
+    QuerySpatialContext spatialContext =
+        new QuerySpatialContext(
+            new QueryImpl(filterBuilder.attribute("test").equalTo().text("value")),
+            filterAdapter);
+    assertThat(spatialContext.getQueryShape(), is(nullValue()));
+    assertThat(spatialContext.distanceInMeters("POINT (0 1)"), is(nullValue()));
+  }
+
   private void distanceCheck(Double input, Double output) {
     MetacardImpl metacard = new MetacardImpl();
     ResultImpl result = new ResultImpl(metacard);
@@ -0,0 +1,98 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+import com.google.common.collect.ImmutableSet;
+import ddf.catalog.data.AttributeDescriptor;
+import ddf.catalog.data.AttributeType;
+import ddf.catalog.data.MetacardType;
+import ddf.catalog.data.impl.AttributeDescriptorImpl;
+import ddf.catalog.data.impl.BasicTypes;
+import ddf.catalog.data.impl.MetacardTypeImpl;
+import org.codice.ddf.catalog.ui.query.cql.MetacardTypeDescriptorCache.TypeDescriptors;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetacardTypeDescriptorCacheTest {
+
+  private MetacardTypeDescriptorCache cache;
+
+  @Before
+  public void setUp() {
+    cache = new MetacardTypeDescriptorCache();
+  }
+
+  @Test
+  public void testDescriptorsAreCachedPerType() {
+    MetacardType type = type("test", descriptor("title", BasicTypes.STRING_TYPE));
+
+    assertThat(cache.get(type), sameInstance(cache.get(type)));
+  }
+
+  @Test
+  public void testInvalidateRebuildsDescriptors() {
+    MetacardType type = type("test", descriptor("title", BasicTypes.STRING_TYPE));
+    TypeDescriptors before = cache.get(type);
+
+    cache.bindMetacardType(type);
+
+    assertThat(cache.get(type), not(sameInstance(before)));
+  }
+
+  @Test
+  public void testDifferentTypeWithSameNameIsNotShared() {
+    MetacardType first = type("test", descriptor("title", BasicTypes.STRING_TYPE));
+    MetacardType second = type("test", descriptor("thumbnail", BasicTypes.BINARY_TYPE));
+
+    cache.get(first);
+
+    assertThat(cache.get(second).getAttributes().keySet(), contains("thumbnail"));
+  }
+
+  @Test
+  public void testAttributeClassification() {
+    MetacardType type =
+        type(
+            "test",
+            descriptor("title", BasicTypes.STRING_TYPE),
+            descriptor("metadata", BasicTypes.XML_TYPE),
+            descriptor("thumbnail", BasicTypes.BINARY_TYPE),
+            descriptor("object", BasicTypes.OBJECT_TYPE),
+            descriptor("created", BasicTypes.DATE_TYPE));
+
+    TypeDescriptors descriptors = cache.get(type);
+
+    assertThat(
+        descriptors.getAttributes().keySet(),
+        containsInAnyOrder("title", "metadata", "thumbnail", "object", "created"));
+    assertThat(
+        descriptors.getExcludedAttributeNames(),
+        containsInAnyOrder("metadata", "thumbnail", "object"));
+    assertThat(descriptors.getTextAttributeNames(), containsInAnyOrder("title", "metadata"));
+  }
+
+  private static MetacardType type(String name, AttributeDescriptor... descriptors) {
+    return new MetacardTypeImpl(name, ImmutableSet.copyOf(descriptors));
+  }
+
+  private static AttributeDescriptor descriptor(String name, AttributeType<?> type) {
+    return new AttributeDescriptorImpl(name, true, true, false, false, type);
+  }
+}
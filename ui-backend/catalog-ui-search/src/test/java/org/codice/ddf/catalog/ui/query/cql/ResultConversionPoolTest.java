@@ -0,0 +1,180 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.cql;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.fail;
+
+import com.google.common.collect.ImmutableMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultConversionPoolTest {
+
+  private ResultConversionPool pool;
+
+  @Before
+  public void setUp() {
+    pool = new ResultConversionPool();
+    pool.setResultConversionThreads(4);
+  }
+
+  @After
+  public void tearDown() {
+    pool.destroy();
+  }
+
+  @Test
+  public void testOrderIsPreserved() {
+    pool.setResultConversionParallelism(4);
+    List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    List<String> converted = pool.convert(items, String::valueOf);
+
+    assertThat(
+        converted, is(items.stream().map(String::valueOf).collect(Collectors.toList())));
+  }
+
+  @Test
+  public void testUsesMultipleThreads() {
+    pool.setResultConversionParallelism(4);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    pool.convert(
+        items,
+        item -> {
+          threads.add(Thread.currentThread().getName());
+          return item;
+        });
+
+    assertThat(threads.size(), greaterThan(1));
+  }
+
+  @Test
+  public void testParallelismOfOneUsesCallingThread() {
+    pool.refresh(ImmutableMap.of("resultConversionParallelism", 1));
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    pool.convert(
+        items,
+        item -> {
+          threads.add(Thread.currentThread().getName());
+          return item;
+        });
+
+    assertThat(threads.size(), is(1));
+    assertThat(threads.iterator().next(), is(Thread.currentThread().getName()));
+  }
+
+  @Test
+  public void testSmallPagesUseCallingThread() {
+    pool.setResultConversionParallelism(4);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> items = IntStream.range(0, 10).boxed().collect(Collectors.toList());
+
+    pool.convert(
+        items,
+        item -> {
+          threads.add(Thread.currentThread().getName());
+          return item;
+        });
+
+    assertThat(threads.size(), is(1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testConversionFailureIsRethrown() {
+    pool.setResultConversionParallelism(4);
+    List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    pool.convert(
+        items,
+        item -> {
+          if (item == 999) {
+            throw new IllegalArgumentException();
+          }
+          return item;
+        });
+  }
+
+  @Test
+  public void testFullQueueIsConvertedOnCallingThread() {
+    pool.setResultConversionThreads(1);
+    pool.setResultConversionParallelism(40);
+    Set<String> threads = ConcurrentHashMap.newKeySet();
+    List<Integer> items = IntStream.range(0, 1000).boxed().collect(Collectors.toList());
+
+    List<Integer> converted =
+        pool.convert(
+            items,
+            item -> {
+              threads.add(Thread.currentThread().getName());
+              return item;
+            });
+
+    assertThat(converted, is(items));
+    assertThat(threads.contains(Thread.currentThread().getName()), is(true));
+  }
+
+  @Test
+  public void testOutstandingChunksAreCancelledOnFailure() throws InterruptedException {
+    pool.setResultConversionParallelism(2);
+    CountDownLatch started = new CountDownLatch(1);
+    CountDownLatch interrupted = new CountDownLatch(1);
+    List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+    try {
+      pool.convert(
+          items,
+          item -> {
+            if (item == 0) {
+              awaitQuietly(started);
+              throw new IllegalArgumentException();
+            }
+            if (item == 50) {
+              started.countDown();
+              try {
+                Thread.sleep(TimeUnit.SECONDS.toMillis(30));
+              } catch (InterruptedException e) {
+                interrupted.countDown();
+              }
+            }
+            return item;
+          });
+      fail("Expected the conversion failure to be rethrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(interrupted.await(5, TimeUnit.SECONDS), is(true));
+    }
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await(5, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
@@ -0,0 +1,149 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.delegate;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import org.junit.Test;
+
+public class SearchTermMatcherTest {
+
+  @Test
+  public void exactAndWildcardTerms() {
+    SearchTermMatcher matcher =
+        new SearchTermMatcher(
+            ImmutableSet.of(new SearchTerm("fox"), new SearchTerm("qu*"), new SearchTerm("*og")));
+
+    Map<String, Integer> matches =
+        matcher.countMatches(ImmutableList.of("The quick brown Fox jumps over the lazy dog."));
+
+    assertThat(matches, hasEntry("fox", 1));
+    assertThat(matches, hasEntry("qu*", 1));
+    assertThat(matches, hasEntry("*og", 1));
+    assertThat(matches, hasEntry("*", 9));
+  }
+
+  @Test
+  public void unmatchedTermsAreOmitted() {
+    SearchTermMatcher matcher = new SearchTermMatcher(ImmutableSet.of(new SearchTerm("cat")));
+
+    Map<String, Integer> matches = matcher.countMatches(ImmutableList.of("dog"));
+
+    assertThat(matches.containsKey("cat"), is(false));
+    assertThat(matches, hasEntry("*", 1));
+  }
+
+  @Test
+  public void noValuesHasNoTokenCount() {
+    SearchTermMatcher matcher = new SearchTermMatcher(ImmutableSet.of(new SearchTerm("cat")));
+
+    assertThat(matcher.countMatches(Collections.emptyList()).isEmpty(), is(true));
+  }
+
+  @Test
+  public void leadingDelimiterProducesEmptyToken() {
+    SearchTermMatcher matcher = new SearchTermMatcher(Collections.emptySet());
+
+    assertThat(matcher.countMatches(ImmutableList.of(" a")), hasEntry("*", 2));
+    assertThat(matcher.countMatches(ImmutableList.of("...")), hasEntry("*", 0));
+    assertThat(matcher.countMatches(ImmutableList.of("a\r\n\nb")), hasEntry("*", 3));
+  }
+
+  @Test
+  public void wildcardTermsWithOtherRegexSyntax() {
+    SearchTermMatcher matcher = new SearchTermMatcher(ImmutableSet.of(new SearchTerm("a+*")));
+
+    assertThat(matcher.countMatches(ImmutableList.of("aaab")), hasEntry("a+*", 1));
+    assertThat(matcher.countMatches(ImmutableList.of("b")), not(hasEntry("a+*", 1)));
+  }
+
+  @Test
+  public void matchesReferenceImplementation() {
+    Random random = new Random(42);
+    String alphabet = "abAB \n\r.,-_*!\té k";
+    String[] termPool = {
+      "a", "ab", "b", "a*", "*b", "a*b", "ab*", "*", "**", "A*", "b*a*", "é*", "*é", "", "k*", "a+*"
+    };
+
+    for (int iteration = 0; iteration < 10_000; iteration++) {
+      Set<SearchTerm> terms = new HashSet<>();
+      for (int i = random.nextInt(5); i > 0; i--) {
+        terms.add(new SearchTerm(termPool[random.nextInt(termPool.length)]));
+      }
+
+      List<String> values = new ArrayList<>();
+      for (int i = random.nextInt(3); i > 0; i--) {
+        StringBuilder value = new StringBuilder();
+        for (int j = random.nextInt(12); j > 0; j--) {
+          value.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        values.add(value.toString());
+      }
+
+      assertThat(
+          new SearchTermMatcher(terms).countMatches(values), is(referenceMatches(terms, values)));
+    }
+  }
+
+  /** The line-splitting implementation previously used by {@code CqlResultImpl}. */
+  private static Map<String, Integer> referenceMatches(
+      Collection<SearchTerm> searchTerms, List<String> textAttributes) {
+    Map<String, Integer> matches = new HashMap<>();
+    List<SearchTerm> terms = new ArrayList<>();
+    for (SearchTerm term : searchTerms) {
+      if (!"*".equals(term.getTerm())) {
+        terms.add(term);
+      }
+    }
+
+    int totalTokens = 0;
+    for (String value : textAttributes) {
+      BufferedReader reader = new BufferedReader(new StringReader(value.toLowerCase()));
+      String line;
+      try {
+        while ((line = reader.readLine()) != null) {
+          for (String token : line.split("[\\s\\p{Punct}]+")) {
+            totalTokens++;
+            for (SearchTerm term : terms) {
+              if (term.match(token)) {
+                matches.put(term.getTerm(), matches.getOrDefault(term.getTerm(), 0) + 1);
+              }
+            }
+          }
+        }
+      } catch (IOException e) {
+        throw new IllegalStateException(e);
+      }
+      matches.put("*", totalTokens);
+    }
+    return matches;
+  }
+}
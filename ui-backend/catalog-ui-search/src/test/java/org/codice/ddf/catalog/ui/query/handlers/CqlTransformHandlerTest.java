@@ -15,32 +15,58 @@ package org.codice.ddf.catalog.ui.query.handlers;
 
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.matchesPattern;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import ddf.catalog.data.BinaryContent;
+import ddf.catalog.data.Result;
 import ddf.catalog.data.impl.BinaryContentImpl;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.SourceResponse;
+import ddf.catalog.transform.CatalogTransformerException;
 import ddf.catalog.transform.QueryResponseTransformer;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
 import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
 import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.core.HttpHeaders;
 import org.codice.ddf.catalog.ui.query.cql.CqlQueryResponseImpl;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequestImpl;
+import org.codice.ddf.catalog.ui.query.utility.CqlRequest;
+import org.codice.ddf.catalog.ui.query.utility.ExportWriter;
+import org.codice.ddf.catalog.ui.query.utility.StreamingQueryResponseTransformer;
 import org.codice.ddf.catalog.ui.util.CqlQueriesImpl;
 import org.codice.ddf.catalog.ui.util.EndpointUtil;
 import org.codice.gsonsupport.GsonTypeAdapters.LongDoubleTypeAdapter;
@@ -85,6 +111,8 @@ public class CqlTransformHandlerTest {
   private static final String CONTENT = "test";
   private static final String SERVICE_NOT_FOUND = "\"Service not found\"";
   private static final String SERVICE_SUCCESS = GSON.toJson("");
+  private static final String EXPORT_BODY =
+      "{\"searches\":[{\"srcs\":[\"a\"],\"cql\":\"anyText ILIKE '*'\"},{\"srcs\":[\"b\"],\"cql\":\"anyText ILIKE '*'\"}],\"count\":4,\"sorts\":[{\"attribute\":\"RELEVANCE\",\"direction\":\"descending\"}],\"hiddenResults\":[\"hidden\"]}";
   private static final String ATTACHMENT_REGEX =
       "^attachment;filename=\"export-\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}(\\.\\d{3})?Z."
           + RETURN_ID
@@ -198,4 +226,196 @@ public class CqlTransformHandlerTest {
         matchesPattern(ATTACHMENT_REGEX));
     assertThat(mockResponse.type(), is(MIME_TYPE));
   }
+
+  @Test
+  public void testStreamedExportMatchesBufferedExport() throws Exception {
+    IdTransformer transformer =
+        givenExport(
+            ImmutableList.of(result("a1", 0.9), result("hidden", 0.99), result("a2", 0.3)),
+            ImmutableList.of(result("b1", 0.5), result("b2", 0.95), result("b3", 0.1)));
+
+    String buffered = export(false);
+    String streamed = export(true);
+
+    assertThat(transformer.getTransformedExports(), is(1));
+    assertThat(streamed, is("b2\na1\nb1\na2\n"));
+    assertThat(streamed, is(buffered));
+  }
+
+  @Test
+  public void testUnsortedSourceIsNotStreamed() throws Exception {
+    List<Result> unsorted =
+        IntStream.range(0, 300)
+            .mapToObj(i -> result("a" + i, i / 1000.0))
+            .collect(Collectors.toList());
+    IdTransformer transformer =
+        givenExport(unsorted, ImmutableList.of(result("b1", 0.5), result("b2", 0.95)));
+
+    String buffered = export(false);
+    String streamed = export(true);
+
+    assertThat(transformer.getTransformedExports(), is(2));
+    assertThat(streamed, is("b2\nb1\na299\na298\n"));
+    assertThat(streamed, is(buffered));
+  }
+
+  @Test
+  public void testSelectTopResults() {
+    Result a = result("a", 0.9);
+    Result b = result("b", 0.7);
+    Result c = result("c", 0.5);
+    Result d = result("d", 0.7);
+    Result e = result("e", 0.1);
+
+    List<Result> top =
+        CqlTransformHandler.selectTopResults(
+            ImmutableList.of(ImmutableList.of(b, a, e), ImmutableList.of(c, d)),
+            ImmutableList.of(new CqlRequest.Sort(Result.RELEVANCE, "descending")),
+            ImmutableSet.of("a"),
+            3);
+
+    assertThat(top, contains(b, d, c));
+  }
+
+  @Test
+  public void testMergeSorted() {
+    Iterator<Integer> merged =
+        CqlTransformHandler.mergeSorted(
+            ImmutableList.of(
+                ImmutableList.of(1, 4, 7).iterator(),
+                ImmutableList.of(2, 5).iterator(),
+                ImmutableList.of(3, 6, 8).iterator()),
+            Comparator.naturalOrder());
+
+    assertThat(ImmutableList.copyOf(merged), contains(1, 2, 3, 4, 5, 6, 7, 8));
+  }
+
+  private IdTransformer givenExport(List<Result> sourceA, List<Result> sourceB) throws Exception {
+    Map<String, List<Result>> sources = ImmutableMap.of("a", sourceA, "b", sourceB);
+    Map<String, CqlQueryResponseImpl> responses = new HashMap<>();
+    for (Map.Entry<String, List<Result>> source : sources.entrySet()) {
+      QueryResponse queryResponse = mock(QueryResponse.class);
+      when(queryResponse.getResults()).thenReturn(source.getValue());
+      CqlQueryResponseImpl response = mock(CqlQueryResponseImpl.class);
+      when(response.getQueryResponse()).thenReturn(queryResponse);
+      responses.put(source.getKey(), response);
+    }
+
+    when(mockCqlQueryUtil.executeCqlQuery(any(CqlRequestImpl.class)))
+        .thenAnswer(
+            invocation -> responses.get(invocation.<CqlRequest>getArgument(0).getSrcs().get(0)));
+    when(mockCqlQueryUtil.iterateResults(any(CqlRequest.class), anyInt(), anyLong()))
+        .thenAnswer(
+            invocation ->
+                sources.get(invocation.<CqlRequest>getArgument(0).getSrcs().get(0)).iterator());
+
+    IdTransformer transformer = new IdTransformer();
+    when(mockBundleContext.getService(mockServiceReference)).thenReturn(transformer);
+    when(mockRequest.params(QUERY_PARAM)).thenReturn(RETURN_ID);
+    when(mockEndpointUtil.safeGetBody(mockRequest)).thenReturn(EXPORT_BODY);
+    return transformer;
+  }
+
+  private String export(boolean streaming) throws Exception {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    HttpServletResponse servletResponse = mock(HttpServletResponse.class);
+    when(servletResponse.getOutputStream()).thenReturn(new ByteArrayServletOutputStream(output));
+
+    cqlTransformHandler.setStreamingExportEnabled(streaming);
+    cqlTransformHandler.handle(mockRequest, new MockResponse(servletResponse));
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /** Exports the id of each result on its own line. */
+  private static class IdTransformer implements StreamingQueryResponseTransformer {
+
+    private int transformedExports = 0;
+
+    @Override
+    public BinaryContent transform(SourceResponse response, Map<String, Serializable> arguments)
+        throws CatalogTransformerException {
+      transformedExports++;
+      StringWriter output = new StringWriter();
+      ExportWriter writer = new IdWriter();
+      try {
+        writer.start(output);
+        for (Result result : response.getResults()) {
+          writer.write(result);
+        }
+        writer.finish();
+        return new BinaryContentImpl(
+            new ByteArrayInputStream(output.toString().getBytes(StandardCharsets.UTF_8)),
+            new MimeType(writer.getMimeType()));
+      } catch (IOException | MimeTypeParseException e) {
+        throw new CatalogTransformerException(e);
+      }
+    }
+
+    @Override
+    public ExportWriter createExportWriter(Map<String, Serializable> arguments) {
+      return new IdWriter();
+    }
+
+    int getTransformedExports() {
+      return transformedExports;
+    }
+  }
+
+  private static class IdWriter implements ExportWriter {
+
+    private Writer writer;
+
+    @Override
+    public String getMimeType() {
+      return "text/plain";
+    }
+
+    @Override
+    public void start(Writer writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(Result result) throws IOException {
+      writer.write(result.getMetacard().getId());
+      writer.write('\n');
+    }
+
+    @Override
+    public void finish() throws IOException {
+      writer.flush();
+    }
+  }
+
+  private static class ByteArrayServletOutputStream extends ServletOutputStream {
+
+    private final ByteArrayOutputStream output;
+
+    ByteArrayServletOutputStream(ByteArrayOutputStream output) {
+      this.output = output;
+    }
+
+    @Override
+    public boolean isReady() {
+      return true;
+    }
+
+    @Override
+    public void setWriteListener(WriteListener writeListener) {
+      // writes never block
+    }
+
+    @Override
+    public void write(int b) {
+      output.write(b);
+    }
+  }
+
+  private static Result result(String id, double relevance) {
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setId(id);
+    ResultImpl result = new ResultImpl(metacard);
+    result.setRelevanceScore(relevance);
+    return result;
+  }
 }
@@ -0,0 +1,139 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.email;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import javax.mail.Message;
+import javax.mail.Session;
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
+import org.codice.ddf.catalog.ui.query.monitor.api.MetacardFormatter;
+import org.codice.ddf.catalog.ui.subscription.SubscriptionsPersistentStore;
+import org.codice.ddf.platform.email.SmtpClient;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EmailNotifierTest {
+
+  private static final String BODY_TEMPLATE = "body";
+
+  private static final String SUBJECT_TEMPLATE = "subject";
+
+  private MetacardFormatter metacardFormatter;
+
+  private SubscriptionsPersistentStore subscriptionsPersistentStore;
+
+  private SmtpClient smtpClient;
+
+  private EmailNotifier emailNotifier;
+
+  @Before
+  public void setup() {
+    metacardFormatter = mock(MetacardFormatter.class);
+    when(metacardFormatter.format(anyString(), any(), anyLong())).then(i -> i.getArgument(0));
+    subscriptionsPersistentStore = mock(SubscriptionsPersistentStore.class);
+    smtpClient = mock(SmtpClient.class);
+    when(smtpClient.createSession()).thenReturn(Session.getInstance(new Properties()));
+
+    emailNotifier =
+        new EmailNotifier(
+            BODY_TEMPLATE,
+            SUBJECT_TEMPLATE,
+            "from@example.com",
+            metacardFormatter,
+            subscriptionsPersistentStore,
+            smtpClient);
+    emailNotifier.setRetryDelaySeconds(0L);
+  }
+
+  @After
+  public void tearDown() {
+    emailNotifier.destroy();
+  }
+
+  @Test
+  public void testNotify() {
+    WorkspaceMetacardImpl workspace = new WorkspaceMetacardImpl("workspaceId");
+    when(subscriptionsPersistentStore.getEmails(anyCollection()))
+        .thenReturn(
+            Collections.singletonMap(
+                "workspaceId", new HashSet<>(Arrays.asList("a@example.com", "b@example.com"))));
+    when(smtpClient.send(any())).thenReturn(CompletableFuture.completedFuture(null));
+
+    emailNotifier.notify(
+        Collections.singletonMap("workspaceId", new ImmutablePair<>(workspace, 3L)));
+
+    verify(smtpClient, timeout(5000).times(2)).send(any(Message.class));
+    verify(smtpClient, times(1)).createSession();
+    verify(metacardFormatter, times(1)).format(eq(BODY_TEMPLATE), eq(workspace), eq(3L));
+    verify(metacardFormatter, times(1)).format(eq(SUBJECT_TEMPLATE), eq(workspace), eq(3L));
+    assertThat(emailNotifier.getMetrics().getQueued(), is(2L));
+  }
+
+  @Test
+  public void testNotifyRetriesFailedDelivery() {
+    WorkspaceMetacardImpl workspace = new WorkspaceMetacardImpl("workspaceId");
+    when(subscriptionsPersistentStore.getEmails(anyCollection()))
+        .thenReturn(Collections.singletonMap("workspaceId", Collections.singleton("a@example.com")));
+    CompletableFuture<Void> failure = new CompletableFuture<>();
+    failure.completeExceptionally(new IllegalStateException("smtp unavailable"));
+    when(smtpClient.send(any()))
+        .thenReturn(failure)
+        .thenReturn(CompletableFuture.completedFuture(null));
+
+    emailNotifier.notify(
+        Collections.singletonMap("workspaceId", new ImmutablePair<>(workspace, 3L)));
+
+    verify(smtpClient, timeout(5000).times(2)).send(any(Message.class));
+    assertThat(emailNotifier.getMetrics().getRetried(), is(1L));
+  }
+
+  @Test
+  public void testNotifyDropsEmailsBeyondMaxPendingDeliveries() {
+    WorkspaceMetacardImpl workspace = new WorkspaceMetacardImpl("workspaceId");
+    when(subscriptionsPersistentStore.getEmails(anyCollection()))
+        .thenReturn(
+            Collections.singletonMap(
+                "workspaceId",
+                new HashSet<>(Arrays.asList("a@example.com", "b@example.com", "c@example.com"))));
+    // never completes, so the first email stays pending
+    when(smtpClient.send(any())).thenReturn(new CompletableFuture<>());
+    emailNotifier.setMaxPendingDeliveries(1);
+
+    emailNotifier.notify(
+        Collections.singletonMap("workspaceId", new ImmutablePair<>(workspace, 3L)));
+
+    verify(smtpClient, timeout(5000).times(1)).send(any(Message.class));
+    assertThat(emailNotifier.getMetrics().getQueued(), is(1L));
+    assertThat(emailNotifier.getMetrics().getFailed(), is(2L));
+  }
+}
@@ -0,0 +1,50 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.nio.file.Path;
+import java.util.Optional;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FilePartitionLeaseTest {
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testLeaseIsExclusive() throws Exception {
+    Path directory = temporaryFolder.newFolder().toPath().resolve("leases");
+    WorkspacePartition partition = new WorkspacePartition(2, 1);
+
+    Optional<FilePartitionLease> lease = FilePartitionLease.tryAcquire(directory, partition);
+    assertThat(lease.isPresent(), is(true));
+
+    assertThat(FilePartitionLease.tryAcquire(directory, partition).isPresent(), is(false));
+
+    Optional<FilePartitionLease> otherLease =
+        FilePartitionLease.tryAcquire(directory, new WorkspacePartition(2, 0));
+    assertThat(otherLease.isPresent(), is(true));
+    otherLease.get().close();
+
+    lease.get().close();
+
+    Optional<FilePartitionLease> nextLease = FilePartitionLease.tryAcquire(directory, partition);
+    assertThat(nextLease.isPresent(), is(true));
+    nextLease.get().close();
+  }
+}
@@ -18,14 +18,18 @@ import static org.codice.ddf.catalog.ui.query.monitor.impl.SubscriptionsPersiste
 import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermark;
 import org.codice.ddf.persistence.PersistenceException;
 import org.codice.ddf.persistence.PersistentStore;
 import org.junit.Before;
@@ -43,12 +47,16 @@ public class SubscriptionsPersistentStoreImplTest {
 
   private static final String IDSTRING = "idstring";
 
+  private static final String OTHER_IDSTRING = "otheridstring";
+
+  private PersistentStore persistentStore;
+
   private SubscriptionsPersistentStoreImpl store;
 
   @Before
   public void setup() {
 
-    PersistentStore persistentStore = new MemoryPersistentStore();
+    persistentStore = new MemoryPersistentStore();
 
     store = new SubscriptionsPersistentStoreImpl(persistentStore);
   }
@@ -123,9 +131,131 @@ public class SubscriptionsPersistentStoreImplTest {
     assertThat(store.getEmails(IDSTRING), is(Collections.emptySet()));
   }
 
+  @Test
+  public void testGetEmailsForIds() {
+    store.addEmails(IDSTRING, new HashSet<>(Arrays.asList(EMAIL1, EMAIL2)));
+    store.addEmail(OTHER_IDSTRING, EMAIL3);
+
+    Map<String, Set<String>> expected = new HashMap<>();
+    expected.put(IDSTRING, new HashSet<>(Arrays.asList(EMAIL1, EMAIL2)));
+    expected.put(OTHER_IDSTRING, Collections.singleton(EMAIL3));
+
+    assertThat(store.getEmails(Arrays.asList(IDSTRING, OTHER_IDSTRING, "unknown")), is(expected));
+  }
+
+  @Test
+  public void testGetSubscriptions() {
+    store.addEmail(IDSTRING, EMAIL1);
+    store.addEmails(OTHER_IDSTRING, new HashSet<>(Arrays.asList(EMAIL1, EMAIL2)));
+    store.removeEmail(OTHER_IDSTRING, EMAIL2);
+
+    assertThat(
+        store.getSubscriptions(EMAIL1), is(new HashSet<>(Arrays.asList(IDSTRING, OTHER_IDSTRING))));
+    assertThat(store.getSubscriptions(EMAIL2), is(Collections.emptySet()));
+
+    store.removeSubscriptions(IDSTRING);
+
+    assertThat(store.getSubscriptions(EMAIL1), is(Collections.singleton(OTHER_IDSTRING)));
+  }
+
+  /** Subscriptions already in the persistent store are found by the index. */
+  @Test
+  public void testGetSubscriptionsExisting() {
+    store.addEmail(IDSTRING, EMAIL1);
+
+    SubscriptionsPersistentStoreImpl otherStore =
+        new SubscriptionsPersistentStoreImpl(persistentStore);
+
+    assertThat(otherStore.getSubscriptions(EMAIL1), is(Collections.singleton(IDSTRING)));
+    assertThat(otherStore.getEmails(IDSTRING), is(Collections.singleton(EMAIL1)));
+  }
+
+  /** Changes made by another node are found once the index is reloaded. */
+  @Test
+  public void testGetSubscriptionsChangedElsewhere() {
+    store.setIndexRefreshSeconds(0L);
+    store.addEmail(IDSTRING, EMAIL1);
+    assertThat(store.getSubscriptions(EMAIL1), is(Collections.singleton(IDSTRING)));
+
+    SubscriptionsPersistentStoreImpl otherStore =
+        new SubscriptionsPersistentStoreImpl(persistentStore);
+    otherStore.addEmail(OTHER_IDSTRING, EMAIL1);
+    otherStore.removeEmail(IDSTRING, EMAIL1);
+
+    assertThat(store.getSubscriptions(EMAIL1), is(Collections.singleton(OTHER_IDSTRING)));
+    assertThat(store.getEmails(IDSTRING), is(Collections.emptySet()));
+  }
+
+  /** The index is not reloaded while it is fresh. */
+  @Test
+  public void testGetSubscriptionsFromFreshIndex() {
+    store.addEmail(IDSTRING, EMAIL1);
+    assertThat(store.getSubscriptions(EMAIL1), is(Collections.singleton(IDSTRING)));
+
+    new SubscriptionsPersistentStoreImpl(persistentStore).addEmail(OTHER_IDSTRING, EMAIL1);
+
+    assertThat(store.getSubscriptions(EMAIL1), is(Collections.singleton(IDSTRING)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testSetNegativeIndexRefreshSeconds() {
+    store.setIndexRefreshSeconds(-1L);
+  }
+
+  @Test
+  public void testSetWatermark() {
+    QueryWatermark watermark = new QueryWatermark(new Date(1000L), "metacardId");
+    store.addEmail(IDSTRING, EMAIL1);
+    store.addEmail(OTHER_IDSTRING, EMAIL2);
+
+    store.setWatermark(IDSTRING, watermark);
+
+    assertThat(
+        store.getWatermarks(new HashSet<>(Arrays.asList(IDSTRING, OTHER_IDSTRING))),
+        is(Collections.singletonMap(IDSTRING, watermark)));
+    assertThat(store.getEmails(IDSTRING), is(Collections.singleton(EMAIL1)));
+  }
+
+  /** Emails added after the watermark was read are not lost when the watermark is written. */
+  @Test
+  public void testSetWatermarkKeepsConcurrentEmails() {
+    QueryWatermark watermark = new QueryWatermark(new Date(1000L), "metacardId");
+    store.addEmail(IDSTRING, EMAIL1);
+
+    SubscriptionsPersistentStoreImpl otherStore =
+        new SubscriptionsPersistentStoreImpl(persistentStore);
+    otherStore.addEmail(IDSTRING, EMAIL2);
+    store.setWatermark(IDSTRING, watermark);
+
+    assertThat(otherStore.getEmails(IDSTRING), is(new HashSet<>(Arrays.asList(EMAIL1, EMAIL2))));
+    assertThat(
+        otherStore.getWatermarks(Collections.singleton(IDSTRING)),
+        is(Collections.singletonMap(IDSTRING, watermark)));
+  }
+
+  @Test
+  public void testRemoveSubscriptionsRemovesWatermark() {
+    store.addEmail(IDSTRING, EMAIL1);
+    store.setWatermark(IDSTRING, new QueryWatermark(new Date(1000L), "metacardId"));
+
+    store.removeSubscriptions(IDSTRING);
+
+    assertThat(store.getWatermarks(Collections.singleton(IDSTRING)), is(Collections.emptyMap()));
+  }
+
+  @Test
+  public void testSetWatermarkUnsubscribed() {
+    store.setWatermark(IDSTRING, new QueryWatermark(new Date(1000L), "metacardId"));
+    assertThat(store.getWatermarks(Collections.singleton(IDSTRING)), is(Collections.emptyMap()));
+  }
+
   private static class MemoryPersistentStore implements PersistentStore {
 
-    private Map<String, Map<String, Object>> map = new HashMap<>();
+    private Map<String, Map<String, Map<String, Object>>> types = new HashMap<>();
+
+    private Map<String, Map<String, Object>> map(String type) {
+      return types.computeIfAbsent(type, key -> new HashMap<>());
+    }
 
     @SuppressWarnings("unchecked")
     @Override
@@ -148,7 +278,7 @@ public class SubscriptionsPersistentStoreImplTest {
             }
             throw new RuntimeException();
           });
-      map.put(id, copy);
+      map(type).put(id, copy);
     }
 
     @Override
@@ -172,12 +302,22 @@ public class SubscriptionsPersistentStoreImplTest {
     @Override
     public List<Map<String, Object>> get(String type, String ecql, int startIndex, int pageSize)
         throws PersistenceException {
-      String id = ecql.split("=")[1].replaceAll("'", "");
-      if (map.containsKey(id)) {
-        return Collections.singletonList(map.get(id));
-      } else {
-        return Collections.emptyList();
+      if (ecql.isEmpty()) {
+        return map(type)
+            .values()
+            .stream()
+            .skip(startIndex)
+            .limit(pageSize)
+            .collect(Collectors.toList());
       }
+      List<Map<String, Object>> results = new ArrayList<>();
+      for (String clause : ecql.split(" OR ")) {
+        String id = clause.split("=")[1].replaceAll("'", "");
+        if (map(type).containsKey(id)) {
+          results.add(map(type).get(id));
+        }
+      }
+      return results;
     }
 
     @Override
@@ -189,7 +329,8 @@ public class SubscriptionsPersistentStoreImplTest {
     @Override
     public int delete(String type, String ecql, int startIndex, int pageSize)
         throws PersistenceException {
-      throw new RuntimeException("not implemented");
+      String id = ecql.split("=")[1].replaceAll("'", "");
+      return map(type).remove(id) != null ? 1 : 0;
     }
   }
 }
@@ -0,0 +1,82 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Collections;
+import java.util.Map;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.codice.ddf.catalog.ui.query.monitor.email.EmailDeliveryMetrics;
+import org.junit.Before;
+import org.junit.Test;
+
+public class WorkspaceMonitorMetricsTest {
+
+  private WorkspaceQueryMetrics queryMetrics;
+
+  private MBeanServer mBeanServer;
+
+  private WorkspaceMonitorMetrics metrics;
+
+  @Before
+  public void setup() {
+    queryMetrics = new WorkspaceQueryMetrics(() -> 0);
+    mBeanServer = mock(MBeanServer.class);
+    metrics =
+        new WorkspaceMonitorMetrics(queryMetrics, new EmailDeliveryMetrics(() -> 0), mBeanServer);
+  }
+
+  @Test
+  public void testInit() throws Exception {
+    metrics.init();
+
+    verify(mBeanServer).registerMBean(any(), any(ObjectName.class));
+  }
+
+  @Test
+  public void testDestroy() throws Exception {
+    when(mBeanServer.isRegistered(any())).thenReturn(true);
+
+    metrics.destroy();
+
+    verify(mBeanServer).unregisterMBean(any());
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testToMap() {
+    queryMetrics.recordQuery("source", 20L);
+    queryMetrics.recordQuery("source", 40L);
+    queryMetrics.recordRun(500L, 3, 2, 9L);
+
+    Map<String, Object> queries = (Map<String, Object>) metrics.toMap().get("queries");
+    Map<String, Object> lastRun = (Map<String, Object>) queries.get("lastRun");
+    Map<String, Object> source =
+        (Map<String, Object>) ((Map<String, Object>) queries.get("sourceLatencies")).get("source");
+
+    assertThat(queries.get("runs"), is(1L));
+    assertThat(lastRun.get("durationMillis"), is(500L));
+    assertThat(lastRun.get("distinctQueries"), is(2));
+    assertThat(source.get("averageMillis"), is(30.0));
+    assertThat(((Map<String, Long>) source.get("buckets")).get("<=50"), is(2L));
+    assertThat(metrics.getSourceQueryCounts(), is(Collections.singletonMap("source", 2L)));
+  }
+}
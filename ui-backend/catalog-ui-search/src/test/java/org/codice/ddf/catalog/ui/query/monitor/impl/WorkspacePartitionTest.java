@@ -0,0 +1,58 @@
+/**
+ * Copyright (c) Codice Foundation
+ *
+ * <p>This is free software: you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation, either version 3 of
+ * the License, or any later version.
+ *
+ * <p>This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY;
+ * without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU Lesser General Public License for more details. A copy of the GNU Lesser General Public
+ * License is distributed along with this program and can be found at
+ * <http://www.gnu.org/licenses/lgpl.html>.
+ */
+package org.codice.ddf.catalog.ui.query.monitor.impl;
+
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+import java.util.stream.IntStream;
+import org.junit.Test;
+
+public class WorkspacePartitionTest {
+
+  @Test
+  public void testEachWorkspaceHasOnePartition() {
+    WorkspacePartition[] partitions = {
+      new WorkspacePartition(3, 0), new WorkspacePartition(3, 1), new WorkspacePartition(3, 2)
+    };
+
+    int[] counts = new int[partitions.length];
+    for (int i = 0; i < 3000; i++) {
+      String workspaceId = "workspace" + i;
+      int owners = 0;
+      for (int p = 0; p < partitions.length; p++) {
+        if (partitions[p].owns(workspaceId)) {
+          owners++;
+          counts[p]++;
+        }
+      }
+      assertThat(owners, is(1));
+    }
+
+    IntStream.of(counts).forEach(count -> assertThat(count > 800, is(true)));
+  }
+
+  @Test
+  public void testWholePartitionOwnsEverything() {
+    WorkspacePartition partition = new WorkspacePartition(1, 0);
+
+    assertThat(partition.isWhole(), is(true));
+    assertThat(partition.owns("workspace"), is(true));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testIndexOutOfRange() {
+    new WorkspacePartition(2, 2);
+  }
+}
@@ -17,15 +17,22 @@ import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ddf.catalog.CatalogFramework;
 import ddf.catalog.data.Attribute;
 import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
+import ddf.catalog.data.types.Core;
 import ddf.catalog.federation.FederationException;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
+import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.source.SourceUnavailableException;
 import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.Subject;
@@ -33,10 +40,16 @@ import java.io.Serializable;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
 import java.util.function.Supplier;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
@@ -51,6 +64,8 @@ import org.codice.ddf.catalog.ui.metacard.query.data.metacard.QueryMetacardImpl;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
 import org.codice.ddf.catalog.ui.query.monitor.api.FilterService;
 import org.codice.ddf.catalog.ui.query.monitor.api.QueryUpdateSubscriber;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermark;
+import org.codice.ddf.catalog.ui.query.monitor.api.QueryWatermarkStore;
 import org.codice.ddf.catalog.ui.query.monitor.api.SecurityService;
 import org.codice.ddf.catalog.ui.query.monitor.api.WorkspaceService;
 import org.junit.Test;
@@ -139,7 +154,7 @@ public class WorkspaceQueryServiceTest {
                 workspaceMetacard,
                 Arrays.asList(queryMetacardWithSource, queryMetacardWithoutSource)));
 
-    when(workspaceService.getQueryMetacards()).thenReturn(queryMetacards);
+    when(workspaceService.getQueryMetacards(any())).thenReturn(queryMetacards);
 
     long hitCount1 = 10;
     long hitCount2 = 20;
@@ -319,4 +334,298 @@ public class WorkspaceQueryServiceTest {
     assertThat(
         queryUpdateSubscriberArgument.get(workspaceId).getRight(), is(hitCount1 + hitCount2));
   }
+  @Test
+  public void testRunFromWatermark() throws Exception {
+    String workspaceId = "3";
+
+    QueryUpdateSubscriber queryUpdateSubscriber = mock(QueryUpdateSubscriber.class);
+    WorkspaceService workspaceService = mock(WorkspaceService.class);
+    CatalogFramework catalogFramework = mock(CatalogFramework.class);
+    FilterBuilder filterBuilder = mock(FilterBuilder.class);
+    Scheduler scheduler = mock(Scheduler.class);
+    when(scheduler.getContext()).thenReturn(mock(SchedulerContext.class));
+    Subject securityServiceSubject = mock(Subject.class);
+    SecurityService securityService = mock(SecurityService.class);
+    when(securityService.getSystemSubject()).thenReturn(securityServiceSubject);
+    when(securityService.addSystemSubject(any())).then(invocation -> invocation.getArgument(0));
+
+    QueryWatermark watermark = new QueryWatermark(new Date(1000L), "a");
+    QueryWatermarkStore watermarkStore = mock(QueryWatermarkStore.class);
+    when(watermarkStore.getWatermarks(Collections.singleton(workspaceId)))
+        .thenReturn(Collections.singletonMap(workspaceId, watermark));
+
+    FilterService filterService = mock(FilterService.class);
+    when(filterService.getModifiedAfterFilter(watermark)).thenReturn(mock(Filter.class));
+    when(filterBuilder.anyOf(Mockito.any(Filter.class))).thenReturn(mock(Or.class));
+    when(filterBuilder.allOf(Mockito.<Filter>anyVararg())).thenReturn(mock(And.class));
+
+    WorkspaceQueryServiceImpl workspaceQueryServiceImpl =
+        new WorkspaceQueryServiceImpl(
+            queryUpdateSubscriber,
+            workspaceService,
+            catalogFramework,
+            filterBuilder,
+            () -> Optional.of(scheduler),
+            securityService,
+            filterService);
+    workspaceQueryServiceImpl.setQueryTimeInterval(60);
+    workspaceQueryServiceImpl.setQueryTimeoutMinutes(5L);
+    workspaceQueryServiceImpl.setWatermarkStore(watermarkStore);
+
+    WorkspaceMetacardImpl workspaceMetacard = mock(WorkspaceMetacardImpl.class);
+    when(workspaceMetacard.getId()).thenReturn(workspaceId);
+    QueryMetacardImpl queryMetacard = mock(QueryMetacardImpl.class);
+    when(queryMetacard.getSources()).thenReturn(Collections.singletonList("SomeSource"));
+    when(queryMetacard.getCql()).thenReturn("title LIKE 'foo'");
+    when(workspaceService.getQueryMetacards(any()))
+        .thenReturn(
+            Collections.singletonMap(
+                workspaceId,
+                new ImmutablePair<>(workspaceMetacard, Collections.singletonList(queryMetacard))));
+
+    MetacardImpl newest = new MetacardImpl();
+    newest.setId("b");
+    newest.setAttribute(Core.MODIFIED, new Date(2000L));
+    QueryResponse queryResponse = mock(QueryResponse.class);
+    when(queryResponse.getHits()).thenReturn(4L);
+    when(queryResponse.getResults()).thenReturn(Collections.singletonList(new ResultImpl(newest)));
+    when(catalogFramework.query(any())).thenReturn(queryResponse);
+
+    workspaceQueryServiceImpl.run();
+    ArgumentCaptor<Runnable> securitySubjectCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(securityServiceSubject).execute(securitySubjectCaptor.capture());
+    securitySubjectCaptor.getValue().run();
+
+    verify(filterService).getModifiedAfterFilter(watermark);
+    verify(watermarkStore).setWatermark(workspaceId, new QueryWatermark(new Date(2000L), "b"));
+  }
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testRunSharedQueries() throws Exception {
+    QueryUpdateSubscriber queryUpdateSubscriber = mock(QueryUpdateSubscriber.class);
+    WorkspaceService workspaceService = mock(WorkspaceService.class);
+    CatalogFramework catalogFramework = mock(CatalogFramework.class);
+    FilterBuilder filterBuilder = mock(FilterBuilder.class);
+    Scheduler scheduler = mock(Scheduler.class);
+    when(scheduler.getContext()).thenReturn(mock(SchedulerContext.class));
+    Subject securityServiceSubject = mock(Subject.class);
+    SecurityService securityService = mock(SecurityService.class);
+    when(securityService.getSystemSubject()).thenReturn(securityServiceSubject);
+    when(securityService.addSystemSubject(any())).then(invocation -> invocation.getArgument(0));
+
+    FilterService filterService = mock(FilterService.class);
+    when(filterService.getModifiedDateFilter(any())).thenReturn(mock(Filter.class));
+    when(filterBuilder.anyOf(Mockito.anyList())).thenReturn(mock(Or.class));
+    when(filterBuilder.allOf(Mockito.<Filter>anyVararg())).thenReturn(mock(And.class));
+
+    WorkspaceQueryServiceImpl workspaceQueryServiceImpl =
+        new WorkspaceQueryServiceImpl(
+            queryUpdateSubscriber,
+            workspaceService,
+            catalogFramework,
+            filterBuilder,
+            () -> Optional.of(scheduler),
+            securityService,
+            filterService);
+    workspaceQueryServiceImpl.setQueryTimeInterval(60);
+    workspaceQueryServiceImpl.setQueryTimeoutMinutes(5L);
+
+    WorkspaceMetacardImpl workspace1 = mock(WorkspaceMetacardImpl.class);
+    when(workspace1.getId()).thenReturn("1");
+    WorkspaceMetacardImpl workspace2 = mock(WorkspaceMetacardImpl.class);
+    when(workspace2.getId()).thenReturn("2");
+
+    Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
+        new HashMap<>();
+    queryMetacards.put(
+        "1",
+        new ImmutablePair<>(
+            workspace1, Arrays.asList(query("title LIKE 'foo'"), query("title LIKE 'bar'"))));
+    queryMetacards.put(
+        "2",
+        new ImmutablePair<>(
+            workspace2, Arrays.asList(query("title  LIKE  'bar'"), query("(title LIKE 'foo')"))));
+    when(workspaceService.getQueryMetacards(any())).thenReturn(queryMetacards);
+
+    QueryResponse queryResponse = mock(QueryResponse.class);
+    when(queryResponse.getHits()).thenReturn(7L);
+    when(catalogFramework.query(any())).thenReturn(queryResponse);
+
+    workspaceQueryServiceImpl.run();
+    ArgumentCaptor<Runnable> securitySubjectCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(securityServiceSubject).execute(securitySubjectCaptor.capture());
+    securitySubjectCaptor.getValue().run();
+
+    ArgumentCaptor<QueryRequest> queryRequestCaptor = ArgumentCaptor.forClass(QueryRequest.class);
+    verify(catalogFramework, times(1)).query(queryRequestCaptor.capture());
+    assertThat(queryRequestCaptor.getValue().getQuery().getPageSize(), is(1));
+    assertThat(
+        queryRequestCaptor.getValue().getProperties().containsKey("excludeAttributes"), is(true));
+    ArgumentCaptor<Map> argumentCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(queryUpdateSubscriber).notify(argumentCaptor.capture());
+    Map<String, Pair<WorkspaceMetacardImpl, Long>> hitCounts = argumentCaptor.getValue();
+    assertThat(hitCounts.get("1").getRight(), is(7L));
+    assertThat(hitCounts.get("2").getRight(), is(7L));
+    assertThat(
+        workspaceQueryServiceImpl.getMetrics().getSourceLatencies().get("SomeSource").getCount(),
+        is(1L));
+    assertThat(workspaceQueryServiceImpl.getMetrics().getTimeouts(), is(0L));
+    assertThat(workspaceQueryServiceImpl.getMetrics().getLastRunWorkspaces(), is(2));
+    assertThat(workspaceQueryServiceImpl.getMetrics().getLastRunDistinctQueries(), is(1));
+    assertThat(workspaceQueryServiceImpl.getMetrics().getLastRunHits(), is(14L));
+  }
+
+  /** Queries waiting on a slow source do not hold the threads that other sources need. */
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testRunSlowSource() throws Exception {
+    QueryUpdateSubscriber queryUpdateSubscriber = mock(QueryUpdateSubscriber.class);
+    WorkspaceService workspaceService = mock(WorkspaceService.class);
+    CatalogFramework catalogFramework = mock(CatalogFramework.class);
+    FilterBuilder filterBuilder = mock(FilterBuilder.class);
+    Scheduler scheduler = mock(Scheduler.class);
+    when(scheduler.getContext()).thenReturn(mock(SchedulerContext.class));
+    Subject securityServiceSubject = mock(Subject.class);
+    SecurityService securityService = mock(SecurityService.class);
+    when(securityService.getSystemSubject()).thenReturn(securityServiceSubject);
+    when(securityService.addSystemSubject(any())).then(invocation -> invocation.getArgument(0));
+
+    FilterService filterService = mock(FilterService.class);
+    when(filterService.getModifiedDateFilter(any())).thenReturn(mock(Filter.class));
+    when(filterBuilder.anyOf(Mockito.anyList()))
+        .then(invocation -> mock(Or.class, invocation.getArgument(0).toString()));
+    when(filterBuilder.allOf(Mockito.<Filter>anyVararg()))
+        .then(invocation -> mock(And.class, Arrays.toString(invocation.getArguments())));
+
+    WorkspaceQueryServiceImpl workspaceQueryServiceImpl =
+        new WorkspaceQueryServiceImpl(
+            queryUpdateSubscriber,
+            workspaceService,
+            catalogFramework,
+            filterBuilder,
+            () -> Optional.of(scheduler),
+            securityService,
+            filterService);
+    workspaceQueryServiceImpl.setQueryTimeInterval(60);
+    workspaceQueryServiceImpl.setQueryTimeoutMinutes(5L);
+    workspaceQueryServiceImpl.setQueryThreads(2);
+    workspaceQueryServiceImpl.setQueriesPerSource(1);
+
+    Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
+        new HashMap<>();
+    for (int i = 0; i < 4; i++) {
+      String source = i < 3 ? "SlowSource" : "FastSource";
+      WorkspaceMetacardImpl workspace = mock(WorkspaceMetacardImpl.class);
+      when(workspace.getId()).thenReturn("workspace" + i);
+      queryMetacards.put(
+          "workspace" + i,
+          new ImmutablePair<>(
+              workspace,
+              Collections.singletonList(query("title LIKE '" + source + i + "'", source))));
+    }
+    when(workspaceService.getQueryMetacards(any())).thenReturn(queryMetacards);
+
+    CountDownLatch fastQueryRun = new CountDownLatch(1);
+    AtomicBoolean slowQueryTimedOut = new AtomicBoolean();
+    QueryResponse queryResponse = mock(QueryResponse.class);
+    when(queryResponse.getHits()).thenReturn(1L);
+    when(catalogFramework.query(any()))
+        .then(
+            invocation -> {
+              QueryRequest queryRequest = invocation.getArgument(0);
+              Filter filter = ((QueryImpl) queryRequest.getQuery()).getFilter();
+              if (filter.toString().contains("SlowSource")) {
+                if (!fastQueryRun.await(10, TimeUnit.SECONDS)) {
+                  slowQueryTimedOut.set(true);
+                }
+              } else {
+                fastQueryRun.countDown();
+              }
+              return queryResponse;
+            });
+
+    workspaceQueryServiceImpl.run();
+    ArgumentCaptor<Runnable> securitySubjectCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(securityServiceSubject).execute(securitySubjectCaptor.capture());
+    securitySubjectCaptor.getValue().run();
+
+    assertThat(slowQueryTimedOut.get(), is(false));
+    ArgumentCaptor<Map> argumentCaptor = ArgumentCaptor.forClass(Map.class);
+    verify(queryUpdateSubscriber).notify(argumentCaptor.capture());
+    assertThat(argumentCaptor.getValue().size(), is(4));
+    assertThat(workspaceQueryServiceImpl.getMetrics().getQueueDepth(), is(0));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  public void testRunPartition() throws Exception {
+    WorkspaceService workspaceService = mock(WorkspaceService.class);
+    Scheduler scheduler = mock(Scheduler.class);
+    when(scheduler.getContext()).thenReturn(mock(SchedulerContext.class));
+    Subject securityServiceSubject = mock(Subject.class);
+    SecurityService securityService = mock(SecurityService.class);
+    when(securityService.getSystemSubject()).thenReturn(securityServiceSubject);
+    when(workspaceService.getQueryMetacards(any())).thenReturn(Collections.emptyMap());
+
+    WorkspaceQueryServiceImpl workspaceQueryServiceImpl =
+        new WorkspaceQueryServiceImpl(
+            mock(QueryUpdateSubscriber.class),
+            workspaceService,
+            mock(CatalogFramework.class),
+            mock(FilterBuilder.class),
+            () -> Optional.of(scheduler),
+            securityService,
+            mock(FilterService.class));
+    workspaceQueryServiceImpl.setQueryTimeInterval(60);
+    workspaceQueryServiceImpl.setPartitionCount(3);
+    workspaceQueryServiceImpl.setPartitionIndex(2);
+
+    workspaceQueryServiceImpl.run();
+    ArgumentCaptor<Runnable> securitySubjectCaptor = ArgumentCaptor.forClass(Runnable.class);
+    verify(securityServiceSubject).execute(securitySubjectCaptor.capture());
+    securitySubjectCaptor.getValue().run();
+
+    ArgumentCaptor<Predicate<String>> filterCaptor = ArgumentCaptor.forClass(Predicate.class);
+    verify(workspaceService).getQueryMetacards(filterCaptor.capture());
+    WorkspacePartition partition = new WorkspacePartition(3, 2);
+    for (int i = 0; i < 100; i++) {
+      String workspaceId = "workspace" + i;
+      assertThat(filterCaptor.getValue().test(workspaceId), is(partition.owns(workspaceId)));
+    }
+  }
+
+  @Test
+  public void testRunInvalidPartition() throws Exception {
+    WorkspaceService workspaceService = mock(WorkspaceService.class);
+    Scheduler scheduler = mock(Scheduler.class);
+    when(scheduler.getContext()).thenReturn(mock(SchedulerContext.class));
+    SecurityService securityService = mock(SecurityService.class);
+
+    WorkspaceQueryServiceImpl workspaceQueryServiceImpl =
+        new WorkspaceQueryServiceImpl(
+            mock(QueryUpdateSubscriber.class),
+            workspaceService,
+            mock(CatalogFramework.class),
+            mock(FilterBuilder.class),
+            () -> Optional.of(scheduler),
+            securityService,
+            mock(FilterService.class));
+    workspaceQueryServiceImpl.setPartitionIndex(1);
+
+    workspaceQueryServiceImpl.run();
+
+    verify(securityService, never()).getSystemSubject();
+    verify(workspaceService, never()).getQueryMetacards(any());
+  }
+
+  private static QueryMetacardImpl query(String cql) {
+    return query(cql, "SomeSource");
+  }
+
+  private static QueryMetacardImpl query(String cql, String source) {
+    QueryMetacardImpl queryMetacard = mock(QueryMetacardImpl.class);
+    when(queryMetacard.getSources()).thenReturn(Collections.singletonList(source));
+    when(queryMetacard.getCql()).thenReturn(cql);
+    return queryMetacard;
+  }
 }
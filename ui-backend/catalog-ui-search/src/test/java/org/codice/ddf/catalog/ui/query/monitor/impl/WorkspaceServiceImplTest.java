@@ -22,6 +22,7 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -41,8 +42,13 @@ import ddf.catalog.source.UnsupportedQueryException;
 import ddf.security.SecurityConstants;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 import javax.ws.rs.NotFoundException;
+import org.apache.commons.lang3.tuple.Pair;
 import org.codice.ddf.catalog.ui.metacard.query.data.metacard.QueryMetacardImpl;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceConstants;
 import org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceMetacardImpl;
@@ -55,6 +61,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.opengis.filter.Filter;
@@ -94,7 +101,7 @@ public class WorkspaceServiceImplTest {
             persistentStore,
             filterBuilder);
 
-    workspaceServiceImpl.setMaxSubscriptions(100);
+    workspaceServiceImpl.setSubscriptionsPageSize(100);
   }
 
   private void mockCatalogFrameworkQuery(String id, String subject)
@@ -136,6 +143,71 @@ public class WorkspaceServiceImplTest {
     assertMetacardList(TEST_ID, TEST_SUBJECT, workspaceMetacards);
   }
 
+  @Test
+  public void testGetWorkspaceMetacardsInPages() throws Exception {
+    workspaceServiceImpl.setSubscriptionsPageSize(1);
+    when(securityService.addSystemSubject(any()))
+        .thenReturn(Collections.singletonMap(SecurityConstants.SECURITY_SUBJECT, TEST_SUBJECT));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(0), eq(1)))
+        .thenReturn(Collections.singletonList(Collections.singletonMap("id_txt", "workspace1")));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(1), eq(1)))
+        .thenReturn(Collections.singletonList(Collections.singletonMap("id_txt", "workspace2")));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(2), eq(1)))
+        .thenReturn(Collections.emptyList());
+    when(workspaceQueryBuilder.createFilter(any())).thenReturn(mock(Filter.class));
+
+    QueryResponse workspaceResponse1 = mock(QueryResponse.class);
+    when(workspaceResponse1.getResults())
+        .thenReturn(
+            Collections.singletonList(getMockResult(new WorkspaceMetacardImpl("workspace1"))));
+    QueryResponse workspaceResponse2 = mock(QueryResponse.class);
+    when(workspaceResponse2.getResults())
+        .thenReturn(
+            Collections.singletonList(getMockResult(new WorkspaceMetacardImpl("workspace2"))));
+    when(catalogFramework.query(any(QueryRequest.class)))
+        .thenReturn(workspaceResponse1)
+        .thenReturn(workspaceResponse2);
+
+    List<WorkspaceMetacardImpl> workspaceMetacards = workspaceServiceImpl.getWorkspaceMetacards();
+
+    assertThat(
+        workspaceMetacards.stream().map(Metacard::getId).collect(Collectors.toList()),
+        is(Arrays.asList("workspace1", "workspace2")));
+    verify(workspaceQueryBuilder).createFilter(Collections.singleton("workspace1"));
+    verify(workspaceQueryBuilder).createFilter(Collections.singleton("workspace2"));
+  }
+
+  /** Subscriptions that moved while they were being read are looked up once, in id order. */
+  @Test
+  public void testGetWorkspaceMetacardsInIdOrder() throws Exception {
+    workspaceServiceImpl.setSubscriptionsPageSize(2);
+    when(securityService.addSystemSubject(any()))
+        .thenReturn(Collections.singletonMap(SecurityConstants.SECURITY_SUBJECT, TEST_SUBJECT));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(0), eq(2)))
+        .thenReturn(
+            Arrays.asList(
+                Collections.singletonMap("id_txt", "workspace3"),
+                Collections.singletonMap("id_txt", "workspace1")));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(2), eq(2)))
+        .thenReturn(
+            Arrays.asList(
+                Collections.singletonMap("id_txt", "workspace2"),
+                Collections.singletonMap("id_txt", "workspace3")));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(4), eq(2)))
+        .thenReturn(Collections.emptyList());
+    when(workspaceQueryBuilder.createFilter(any())).thenReturn(mock(Filter.class));
+    when(catalogFramework.query(any(QueryRequest.class))).thenReturn(queryResponse);
+
+    workspaceServiceImpl.getWorkspaceMetacards();
+
+    InOrder inOrder = inOrder(workspaceQueryBuilder);
+    inOrder
+        .verify(workspaceQueryBuilder)
+        .createFilter(new HashSet<>(Arrays.asList("workspace1", "workspace2")));
+    inOrder.verify(workspaceQueryBuilder).createFilter(Collections.singleton("workspace3"));
+    inOrder.verifyNoMoreInteractions();
+  }
+
   @Test
   public void testGetEmptyWorkspaceMetacards() {
     List<WorkspaceMetacardImpl> workspaceMetacards =
@@ -240,6 +312,48 @@ public class WorkspaceServiceImplTest {
     assertThat(queries, hasSize(2));
   }
 
+  @Test
+  public void testGetQueryMetacardsForAllWorkspaces() throws Exception {
+    WorkspaceMetacardImpl workspace1 = new WorkspaceMetacardImpl("workspace1");
+    workspace1.setQueries(Arrays.asList("queryId1", "queryId2"));
+    WorkspaceMetacardImpl workspace2 = new WorkspaceMetacardImpl("workspace2");
+    workspace2.setQueries(Collections.singletonList("queryId2"));
+
+    when(securityService.addSystemSubject(any()))
+        .thenReturn(Collections.singletonMap(SecurityConstants.SECURITY_SUBJECT, TEST_SUBJECT));
+    when(persistentStore.get(eq(SUBSCRIPTION_TYPE.toString()), anyString(), eq(0), eq(100)))
+        .thenReturn(
+            Arrays.asList(
+                Collections.singletonMap("id_txt", "workspace1"),
+                Collections.singletonMap("id_txt", "workspace2")));
+    when(workspaceQueryBuilder.createFilter(any())).thenReturn(mock(Filter.class));
+
+    QueryResponse workspaceResponse = mock(QueryResponse.class);
+    when(workspaceResponse.getResults())
+        .thenReturn(Arrays.asList(getMockResult(workspace1), getMockResult(workspace2)));
+    when(queryResponse.getResults())
+        .thenReturn(Arrays.asList(getQueryResult("queryId1"), getQueryResult("queryId2")));
+
+    AtomicInteger queryMetacardRequests = new AtomicInteger();
+    when(catalogFramework.query(any(QueryRequest.class)))
+        .then(
+            invocation -> {
+              QueryRequest request = invocation.getArgument(0);
+              if (request.getProperties().containsKey(SecurityConstants.SECURITY_SUBJECT)) {
+                return workspaceResponse;
+              }
+              queryMetacardRequests.incrementAndGet();
+              return queryResponse;
+            });
+
+    Map<String, Pair<WorkspaceMetacardImpl, List<QueryMetacardImpl>>> queryMetacards =
+        workspaceServiceImpl.getQueryMetacards();
+
+    assertThat(queryMetacardRequests.get(), is(1));
+    assertThat(getIds(queryMetacards.get("workspace1").getRight()), is(workspace1.getQueries()));
+    assertThat(getIds(queryMetacards.get("workspace2").getRight()), is(workspace2.getQueries()));
+  }
+
   @Test
   public void testGetWorkspaceMetacardFromQueryId()
       throws UnsupportedQueryException, SourceUnavailableException, FederationException {
@@ -270,6 +384,16 @@ public class WorkspaceServiceImplTest {
     return Arrays.asList(getMockResult("queryId1"), getMockResult("queryId2"));
   }
 
+  private Result getQueryResult(String id) {
+    QueryMetacardImpl queryMetacard = new QueryMetacardImpl("title");
+    queryMetacard.setId(id);
+    return getMockResult(queryMetacard);
+  }
+
+  private List<String> getIds(List<QueryMetacardImpl> queryMetacards) {
+    return queryMetacards.stream().map(Metacard::getId).collect(Collectors.toList());
+  }
+
   private Result getMockResult(Metacard metacard) {
     Result result = mock(Result.class);
     doReturn(metacard).when(result).getMetacard();
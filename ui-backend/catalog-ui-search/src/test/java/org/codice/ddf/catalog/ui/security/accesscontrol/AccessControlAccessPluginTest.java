@@ -19,7 +19,10 @@ import static org.codice.ddf.catalog.ui.metacard.workspace.WorkspaceConstants.WO
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AclTestSupport.metacardFromAttributes;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableMap;
@@ -32,6 +35,9 @@ import ddf.catalog.operation.impl.UpdateRequestImpl;
 import ddf.catalog.plugin.AccessPlugin;
 import ddf.catalog.plugin.StopProcessingException;
 import ddf.security.SubjectIdentity;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.shiro.subject.Subject;
 import org.apache.shiro.util.ThreadContext;
@@ -60,6 +66,8 @@ public class AccessControlAccessPluginTest {
 
   private AccessPlugin accessPlugin;
 
+  private SubjectIdentity subjectIdentity;
+
   @Before
   public void setUp() {
     setSubject(USER_EINSTEIN);
@@ -68,7 +76,7 @@ public class AccessControlAccessPluginTest {
   private void setSubject(String user) {
     ThreadContext.unbindSubject();
     Subject subject = mock(Subject.class);
-    SubjectIdentity subjectIdentity = mock(SubjectIdentity.class);
+    subjectIdentity = mock(SubjectIdentity.class);
     when(subjectIdentity.getUniqueIdentifier(subject)).thenReturn(user);
     ThreadContext.bind(subject);
 
@@ -372,4 +380,43 @@ public class AccessControlAccessPluginTest {
     UpdateRequest update = getUpdateRequest(METACARD_ID, after);
     accessPlugin.processPreUpdate(update, ImmutableMap.of(METACARD_ID, before));
   }
+
+  @Test
+  public void testSubjectIsResolvedOncePerBulkUpdate() throws StopProcessingException {
+    List<String> ids = new ArrayList<>();
+    List<Metacard> updates = new ArrayList<>();
+    Map<String, Metacard> existing = new HashMap<>();
+    for (int i = 0; i < 10; i++) {
+      String id = METACARD_ID + i;
+      ids.add(id);
+      existing.put(
+          id,
+          metacardFromAttributes(
+              ImmutableMap.of(
+                  Core.ID,
+                  id,
+                  Core.METACARD_OWNER,
+                  USER_NEWTON,
+                  Security.ACCESS_ADMINISTRATORS,
+                  ImmutableSet.of(USER_EINSTEIN),
+                  Core.METACARD_TAGS,
+                  WORKSPACE_TAG)));
+      updates.add(
+          metacardFromAttributes(
+              ImmutableMap.of(
+                  Core.ID,
+                  id,
+                  Core.METACARD_OWNER,
+                  USER_NEWTON,
+                  Security.ACCESS_ADMINISTRATORS,
+                  ImmutableSet.of(USER_EINSTEIN, USER_DIJKSTRA),
+                  Core.METACARD_TAGS,
+                  WORKSPACE_TAG)));
+    }
+
+    UpdateRequest update = new UpdateRequestImpl(ids.toArray(new String[0]), updates);
+
+    assertThat(accessPlugin.processPreUpdate(update, existing), is(update));
+    verify(subjectIdentity, times(1)).getUniqueIdentifier(any());
+  }
 }
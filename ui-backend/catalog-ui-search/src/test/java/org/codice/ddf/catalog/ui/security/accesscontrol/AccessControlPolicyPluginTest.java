@@ -16,19 +16,25 @@ package org.codice.ddf.catalog.ui.security.accesscontrol;
 import static org.codice.ddf.catalog.ui.security.accesscontrol.AclTestSupport.metacardFromAttributes;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.mockito.Mockito.mock;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import ddf.catalog.data.Metacard;
+import ddf.catalog.data.impl.AttributeImpl;
 import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.data.impl.types.SecurityAttributes;
 import ddf.catalog.data.types.Core;
 import ddf.catalog.plugin.PolicyPlugin;
 import ddf.catalog.plugin.PolicyResponse;
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -119,4 +125,81 @@ public class AccessControlPolicyPluginTest {
                 Core.METACARD_OWNER,
                 Collections.singleton("owner"))));
   }
+
+  @Test
+  public void testPostQueryPolicyIsSharedBetweenEqualResults() throws Exception {
+    Map<String, Serializable> attributes =
+        ImmutableMap.of(
+            Core.METACARD_OWNER,
+            "owner",
+            SecurityAttributes.ACCESS_GROUPS,
+            ImmutableList.of("group"),
+            SecurityAttributes.ACCESS_INDIVIDUALS,
+            ImmutableList.of("owner@owner.com"));
+
+    PolicyResponse first =
+        plugin.processPostQuery(new ResultImpl(metacardFromAttributes(attributes)), properties);
+    PolicyResponse second =
+        plugin.processPostQuery(new ResultImpl(metacardFromAttributes(attributes)), properties);
+
+    assertThat(
+        first.itemPolicy(),
+        is(
+            ImmutableMap.of(
+                SecurityAttributes.ACCESS_GROUPS,
+                Collections.singleton("group"),
+                SecurityAttributes.ACCESS_INDIVIDUALS,
+                Collections.singleton("owner@owner.com"),
+                Core.METACARD_OWNER,
+                Collections.singleton("owner"))));
+    assertThat(second.itemPolicy(), is(sameInstance(first.itemPolicy())));
+  }
+
+  @Test
+  public void testPostQueryPolicyFollowsChangedValues() throws Exception {
+    AttributeImpl groups = new AttributeImpl(SecurityAttributes.ACCESS_GROUPS, "a");
+    MetacardImpl metacard = new MetacardImpl();
+    metacard.setAttribute(groups);
+
+    PolicyResponse first = plugin.processPostQuery(new ResultImpl(metacard), properties);
+    groups.addValue("b");
+    PolicyResponse second = plugin.processPostQuery(new ResultImpl(metacard), properties);
+
+    assertThat(
+        first.itemPolicy(),
+        is(ImmutableMap.of(SecurityAttributes.ACCESS_GROUPS, ImmutableSet.of("a"))));
+    assertThat(
+        second.itemPolicy(),
+        is(ImmutableMap.of(SecurityAttributes.ACCESS_GROUPS, ImmutableSet.of("a", "b"))));
+  }
+
+  @Test
+  public void testPreDeletePolicyIsMergedAcrossMetacards() throws Exception {
+    Metacard first =
+        metacardFromAttributes(
+            ImmutableMap.of(
+                Core.METACARD_OWNER,
+                "owner",
+                SecurityAttributes.ACCESS_GROUPS,
+                ImmutableList.of("a")));
+    Metacard second =
+        metacardFromAttributes(
+            ImmutableMap.of(
+                Core.METACARD_OWNER,
+                "other",
+                SecurityAttributes.ACCESS_GROUPS,
+                ImmutableList.of("b")));
+
+    PolicyResponse response =
+        plugin.processPreDelete(Arrays.asList(first, second, first), properties);
+
+    Map<String, Set<String>> expected =
+        ImmutableMap.of(
+            SecurityAttributes.ACCESS_GROUPS,
+            ImmutableSet.of("a", "b"),
+            Core.METACARD_OWNER,
+            ImmutableSet.of("owner", "other"));
+    assertThat(response.itemPolicy(), is(expected));
+    assertThat(response.operationPolicy(), is(expected));
+  }
 }
@@ -20,6 +20,8 @@ import static org.codice.ddf.catalog.ui.security.Constants.SYSTEM_TEMPLATE;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsEqual.equalTo;
+import static org.hamcrest.core.IsNot.not;
+import static org.hamcrest.core.IsSame.sameInstance;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -36,6 +38,7 @@ import ddf.catalog.operation.impl.QueryImpl;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import ddf.catalog.plugin.PluginExecutionException;
 import ddf.catalog.plugin.StopProcessingException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -43,7 +46,9 @@ import java.util.Set;
 import org.geotools.filter.visitor.DuplicatingFilterVisitor;
 import org.junit.Before;
 import org.junit.Test;
+import org.opengis.filter.And;
 import org.opengis.filter.Filter;
+import org.opengis.filter.Or;
 
 public class AccessControlPreQueryPluginTest {
   private static final Set<String> ACCESS_CONTROLLED_TAGS =
@@ -214,9 +219,66 @@ public class AccessControlPreQueryPluginTest {
     verifyPluginDoesNotAlterTheFilter(filter);
   }
 
+  @Test
+  public void testPolicyBranchIsReusedUntilGroupsChange()
+      throws PluginExecutionException, StopProcessingException {
+    List<String> groups = new ArrayList<>();
+    for (int i = 0; i < 250; i++) {
+      groups.add("group" + i);
+    }
+    plugin =
+        new AccessControlPreQueryPluginUnderTest(
+            new GeotoolsFilterBuilder(), groups, new AccessControlSecurityConfiguration());
+    Filter filter = FILTER_BUILDER.attribute(Core.METACARD_TAGS).is().like().text(WORKSPACE_TAG);
+
+    Filter first = policyBranchOf(plugin.process(new QueryRequestImpl(new QueryImpl(filter))));
+    Filter second = policyBranchOf(plugin.process(new QueryRequestImpl(new QueryImpl(filter))));
+    assertThat(second, is(sameInstance(first)));
+
+    groups.remove(0);
+    Filter third = policyBranchOf(plugin.process(new QueryRequestImpl(new QueryImpl(filter))));
+    assertThat(third, is(not(sameInstance(first))));
+    assertThat(((Or) third).getChildren().size(), is(5 + 2 * groups.size()));
+  }
+
+  @Test
+  public void testDeclaredWildcardTagDoesNotBypassPolicy()
+      throws PluginExecutionException, StopProcessingException {
+    Filter filter = FILTER_BUILDER.attribute(Core.METACARD_TAGS).is().like().text(WORKSPACE_TAG);
+    QueryRequest input = new QueryRequestImpl(new QueryImpl(filter));
+    input.getProperties().put("operation.query-tags", ImmutableSet.of("*"));
+
+    verifyPluginAddsSecurityBranchToFilter(input, filter);
+  }
+
+  @Test
+  public void testDeclaredTagsDoNotOverrideFilterTags()
+      throws PluginExecutionException, StopProcessingException {
+    Filter filter = FILTER_BUILDER.attribute(Core.METACARD_TAGS).is().like().text(WORKSPACE_TAG);
+    QueryRequest input = new QueryRequestImpl(new QueryImpl(filter));
+    input.getProperties().put("operation.query-tags", ImmutableSet.of("resource"));
+
+    verifyPluginAddsSecurityBranchToFilter(input, filter);
+  }
+
+  @Test
+  public void testSubjectIsNotLookedUpForResourceQueries()
+      throws PluginExecutionException, StopProcessingException {
+    Filter filter = FILTER_BUILDER.attribute(Metacard.ANY_TEXT).is().like().text(TEXT_WILDCARD);
+    verifyPluginDoesNotAlterTheFilter(filter);
+    verifyPluginDoesNotAlterTheFilter(filter);
+    assertThat(plugin.subjectLookups, is(0));
+  }
+
   private void verifyPluginAddsSecurityBranchToFilter(Filter inputFilter)
       throws PluginExecutionException, StopProcessingException {
-    QueryRequest request = plugin.process(new QueryRequestImpl(new QueryImpl(inputFilter)));
+    verifyPluginAddsSecurityBranchToFilter(
+        new QueryRequestImpl(new QueryImpl(inputFilter)), inputFilter);
+  }
+
+  private void verifyPluginAddsSecurityBranchToFilter(QueryRequest input, Filter inputFilter)
+      throws PluginExecutionException, StopProcessingException {
+    QueryRequest request = plugin.process(input);
     assertThat(
         asGeotoolsComparableFilter(request.getQuery()),
         is(
@@ -277,6 +339,10 @@ public class AccessControlPreQueryPluginTest {
     assertThat(asGeotoolsComparableFilter(request.getQuery()), is(equalTo(inputFilter)));
   }
 
+  private static Filter policyBranchOf(QueryRequest request) {
+    return ((And) ((QueryImpl) request.getQuery()).getFilter()).getChildren().get(1);
+  }
+
   private static Filter asGeotoolsComparableFilter(Query query) {
     return (Filter) query.accept(COPYING_VISITOR, null);
   }
@@ -284,6 +350,8 @@ public class AccessControlPreQueryPluginTest {
   private static class AccessControlPreQueryPluginUnderTest extends AccessControlPreQueryPlugin {
     private final List<String> subjectRoles;
 
+    private int subjectLookups = 0;
+
     private AccessControlPreQueryPluginUnderTest(
         FilterBuilder filterBuilder, String... subjectRoles) {
       super(
@@ -309,6 +377,7 @@ public class AccessControlPreQueryPluginTest {
 
     @Override
     List<String> getSubjectGroups() {
+      subjectLookups++;
       return subjectRoles;
     }
 
@@ -17,26 +17,34 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import ddf.action.ActionRegistry;
 import ddf.catalog.CatalogFramework;
+import ddf.catalog.data.impl.MetacardImpl;
+import ddf.catalog.data.impl.ResultImpl;
 import ddf.catalog.filter.AttributeBuilder;
 import ddf.catalog.filter.ContextualExpressionBuilder;
 import ddf.catalog.filter.FilterAdapter;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.CreateResponse;
 import ddf.catalog.operation.ProcessingDetails;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.impl.QueryRequestImpl;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import org.codice.ddf.catalog.ui.config.ConfigurationApplication;
 import org.codice.ddf.catalog.ui.query.cql.CqlRequestImpl;
+import org.codice.ddf.catalog.ui.query.cql.CqlResponseCache;
 import org.codice.ddf.catalog.ui.query.utility.CqlQueryResponse;
 import org.codice.ddf.catalog.ui.query.utility.CqlResult;
 import org.junit.Before;
@@ -45,6 +53,8 @@ import org.opengis.filter.Filter;
 
 public class CqlQueriesImplTest {
 
+  private static final String LOCAL_SOURCE_ID = "ddf.distribution";
+
   private CqlQueriesImpl cqlQueryUtil;
 
   private FilterBuilder filterBuilderMock;
@@ -91,6 +101,7 @@ public class CqlQueriesImplTest {
     when(attributeBuilderMock.like()).thenReturn(contextualExpressionBuilderMock);
     when(contextualExpressionBuilderMock.text(anyString())).thenReturn(filterMock);
     when(catalogFrameworkMock.query(any(QueryRequestImpl.class))).thenReturn(responseMock);
+    when(catalogFrameworkMock.getId()).thenReturn(LOCAL_SOURCE_ID);
     when(configurationApplicationMock.getMaximumUploadSize()).thenReturn(1 << 20);
 
     cqlQueryUtil =
@@ -132,4 +143,68 @@ public class CqlQueriesImplTest {
     assertThat(details, hasItem(detailsMock1));
     assertThat(details, hasItem(detailsMock2));
   }
+
+  @Test
+  public void testLazyResultsQuery() throws Exception {
+    when(responseMock.getResults())
+        .thenReturn(Collections.singletonList(new ResultImpl(new MetacardImpl())));
+    when(responseMock.getHits()).thenReturn(1L);
+    when(catalogFrameworkMock.query(any(QueryRequestImpl.class))).thenReturn(responseMock);
+
+    CqlQueryResponse cqlQueryResponse = cqlQueryUtil.executeCqlQuery(generateCqlRequest(1), true);
+    List<CqlResult> results = cqlQueryResponse.getResults();
+    assertThat(results, hasSize(1));
+    assertThat(results.get(0).getMetacard(), notNullValue());
+  }
+
+  @Test
+  public void testCachedQuery() throws Exception {
+    when(responseMock.getResults()).thenReturn(Collections.emptyList());
+    when(responseMock.getProcessingDetails()).thenReturn(Collections.emptySet());
+
+    CqlResponseCache responseCache = new CqlResponseCache();
+    responseCache.setQueryResponseCacheEnabled(true);
+    cqlQueryUtil.setResponseCache(responseCache);
+
+    cqlQueryUtil.executeCqlQuery(generateCqlRequest(1));
+    cqlQueryUtil.executeCqlQuery(generateCqlRequest(1));
+
+    verify(catalogFrameworkMock, times(1)).query(any(QueryRequestImpl.class));
+    assertThat(responseCache.getHitCount(), is(1L));
+    assertThat(responseCache.getMissCount(), is(1L));
+  }
+
+  @Test
+  public void testRemoteQueryNotCached() throws Exception {
+    when(responseMock.getResults()).thenReturn(Collections.emptyList());
+    when(responseMock.getProcessingDetails()).thenReturn(Collections.emptySet());
+
+    CqlResponseCache responseCache = new CqlResponseCache();
+    responseCache.setQueryResponseCacheEnabled(true);
+    cqlQueryUtil.setResponseCache(responseCache);
+
+    CqlRequestImpl cqlRequest = generateCqlRequest(1);
+    cqlRequest.setSrcs(Arrays.asList(LOCAL_SOURCE_ID, "remote"));
+    cqlQueryUtil.executeCqlQuery(cqlRequest);
+    cqlQueryUtil.executeCqlQuery(cqlRequest);
+
+    verify(catalogFrameworkMock, times(2)).query(any(QueryRequestImpl.class));
+    assertThat(responseCache.size(), is(0));
+  }
+
+  @Test
+  public void testCachedQueryInvalidatedByIngest() throws Exception {
+    when(responseMock.getResults()).thenReturn(Collections.emptyList());
+    when(responseMock.getProcessingDetails()).thenReturn(Collections.emptySet());
+
+    CqlResponseCache responseCache = new CqlResponseCache();
+    responseCache.setQueryResponseCacheEnabled(true);
+    cqlQueryUtil.setResponseCache(responseCache);
+
+    cqlQueryUtil.executeCqlQuery(generateCqlRequest(1));
+    responseCache.process(mock(CreateResponse.class));
+    cqlQueryUtil.executeCqlQuery(generateCqlRequest(1));
+
+    verify(catalogFrameworkMock, times(2)).query(any(QueryRequestImpl.class));
+  }
 }
@@ -25,6 +25,7 @@ import static org.hamcrest.Matchers.hasKey;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anyString;
@@ -50,6 +51,7 @@ import ddf.catalog.filter.AttributeBuilder;
 import ddf.catalog.filter.ContextualExpressionBuilder;
 import ddf.catalog.filter.EqualityExpressionBuilder;
 import ddf.catalog.filter.FilterBuilder;
+import ddf.catalog.operation.QueryRequest;
 import ddf.catalog.operation.QueryResponse;
 import ddf.catalog.operation.impl.QueryRequestImpl;
 import java.io.Serializable;
@@ -67,6 +69,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 import org.codice.ddf.catalog.ui.config.ConfigurationApplication;
+import org.codice.ddf.catalog.ui.query.cql.MetacardTypeDescriptorCache;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
@@ -94,6 +97,8 @@ public class EndpointUtilTest {
 
   CatalogFramework catalogFrameworkMock;
 
+  private ConfigurationApplication configurationApplicationMock;
+
   // represents 2018-09-05T14:03:17.000Z
   private static final long DATE_EPOCH = 1536156197000L;
 
@@ -117,7 +122,7 @@ public class EndpointUtilTest {
 
     AttributeBuilder attributeBuilderMock = mock(AttributeBuilder.class);
 
-    ConfigurationApplication configurationApplicationMock = mock(ConfigurationApplication.class);
+    configurationApplicationMock = mock(ConfigurationApplication.class);
 
     ContextualExpressionBuilder contextualExpressionBuilderMock =
         mock(ContextualExpressionBuilder.class);
@@ -205,6 +210,27 @@ public class EndpointUtilTest {
     assertThat(metacardTypes, hasKey("mockType"));
   }
 
+  @Test
+  @SuppressWarnings("unchecked")
+  public void testGetMetacardTypeMapPicksUpLateRegistryDescriptors() {
+    AttributeDescriptor mockAttrDescriptor = mock(AttributeDescriptor.class);
+    when(mockAttrDescriptor.getName()).thenReturn("first");
+    when(mockAttrDescriptor.getType()).thenReturn(attributeTypeMock);
+    when(attributeTypeMock.getAttributeFormat()).thenReturn(STRING);
+    when(metacardTypeMock.getName()).thenReturn("mockType");
+    when(attributeRegistryMock.lookup(any())).thenReturn(Optional.empty());
+    endpointUtil.setTypeDescriptorCache(new MetacardTypeDescriptorCache());
+
+    Map<String, Object> before = endpointUtil.getMetacardTypeMap();
+    assertThat(((Map<String, Object>) before.get("mockType")).size(), is(0));
+    assertThat(endpointUtil.getMetacardTypeMap(), is(sameInstance(before)));
+
+    when(attributeRegistryMock.lookup(any())).thenReturn(Optional.of(mockAttrDescriptor));
+
+    Map<String, Object> after = endpointUtil.getMetacardTypeMap();
+    assertThat(((Map<String, Object>) after.get("mockType")).size(), is(1));
+  }
+
   @Test
   public void testGetMetacardsByIdListExpectAll() throws Exception {
 
@@ -230,6 +256,45 @@ public class EndpointUtilTest {
     assertThat(result.keySet(), hasSize(expected));
   }
 
+  @Test
+  public void testGetMetacardsByIdListInChunks() throws Exception {
+    String attributeName = "attr";
+    ArgumentCaptor<List> capturedFilterList = ArgumentCaptor.forClass(List.class);
+
+    Filter tagFilter = mock(Filter.class);
+    QueryResponse firstPage = mock(QueryResponse.class);
+    QueryResponse lastPage = mock(QueryResponse.class);
+    List<Result> resultList = populateResultMockList(2);
+    when(firstPage.getResults()).thenReturn(resultList);
+    when(lastPage.getResults()).thenReturn(Collections.emptyList());
+
+    Collection<String> ids = new ArrayList<>();
+    for (int i = 0; i < 100; i++) {
+      ids.add("id" + i);
+    }
+
+    when(configurationApplicationMock.getMetacardLookupChunkSize()).thenReturn(40);
+    endpointUtil.setMetacardLookupThreads(2);
+    when(catalogFrameworkMock.query(any(QueryRequest.class)))
+        .thenAnswer(
+            invocation ->
+                ((QueryRequest) invocation.getArgument(0)).getQuery().getStartIndex() == 1
+                    ? firstPage
+                    : lastPage);
+    when(filterBuilderMock.attribute(attributeName).is().equalTo())
+        .thenReturn(mock(EqualityExpressionBuilder.class));
+    when(filterBuilderMock.anyOf(anyList())).thenReturn(mock(Or.class));
+    when(filterBuilderMock.allOf(any(Filter.class), any(Filter.class))).thenReturn(mock(And.class));
+
+    Map<String, Result> result =
+        endpointUtil.getMetacardsWithTagByAttributes(attributeName, ids, tagFilter);
+
+    verify(filterBuilderMock, times(3)).anyOf(capturedFilterList.capture());
+    assertThat(
+        capturedFilterList.getAllValues().stream().mapToInt(List::size).sum(), is(ids.size()));
+    assertThat(result.keySet(), hasSize(resultList.size()));
+  }
+
   @Test
   public void testGetMetacardsByTagWithLikeAttributes() throws Exception {
 